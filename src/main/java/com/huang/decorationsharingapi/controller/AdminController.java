@@ -1,6 +1,7 @@
 package com.huang.decorationsharingapi.controller;
 
 
+import com.huang.decorationsharingapi.dto.request.BulkReviewRequest;
 import com.huang.decorationsharingapi.dto.request.CategoryRequest;
 import com.huang.decorationsharingapi.dto.request.ReviewRequest;
 import com.huang.decorationsharingapi.dto.request.UpdateUserRequest;
@@ -10,17 +11,27 @@ import com.huang.decorationsharingapi.entity.Material;
 import com.huang.decorationsharingapi.entity.User;
 import com.huang.decorationsharingapi.service.AdminService;
 import com.huang.decorationsharingapi.service.CategoryService;
+import com.huang.decorationsharingapi.service.MaterialExportService;
 import com.huang.decorationsharingapi.service.MaterialService;
+import com.huang.decorationsharingapi.service.ModerationQueueService;
+import com.huang.decorationsharingapi.service.RenditionWorker;
+import com.huang.decorationsharingapi.service.StatsRollupService;
+import com.huang.decorationsharingapi.service.UserCounterRepair;
 import com.huang.decorationsharingapi.service.UserService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
+import java.io.IOException;
+import java.security.Principal;
+import java.time.LocalDate;
 import java.util.List;
-import java.util.stream.Collectors;
 
 @RestController
 @RequiredArgsConstructor
@@ -32,6 +43,11 @@ public class AdminController {
     private final MaterialService materialService;
     private final CategoryService categoryService;
     private final AdminService adminService;
+    private final MaterialExportService materialExportService;
+    private final ModerationQueueService moderationQueueService;
+    private final StatsRollupService statsRollupService;
+    private final UserCounterRepair userCounterRepair;
+    private final RenditionWorker renditionWorker;
 
     // ========== 用户管理 ==========
     @GetMapping("/users")
@@ -63,6 +79,15 @@ public class AdminController {
         return ResponseEntity.ok(user);
     }
 
+    /**
+     * 立即按实际数据重算全部用户的上传数和收藏数
+     */
+    @PostMapping("/users/counters/repair")
+    public ResponseEntity<MessageResponse> repairUserCounters() {
+        int repaired = userCounterRepair.repair();
+        return ResponseEntity.ok(new MessageResponse("已校正 " + repaired + " 个用户的计数"));
+    }
+
     @DeleteMapping("/users/{id}")
     public ResponseEntity<MessageResponse> deleteUser(@PathVariable Long id) {
         adminService.deleteUser(id);
@@ -78,14 +103,10 @@ public class AdminController {
             @RequestParam(required = false) Long categoryId,
             @RequestParam(required = false) String keyword) {
 
-        Page<Material> materials = adminService.getMaterials(page, pageSize, status, categoryId, keyword);
-
-        List<MaterialResponse> content = materials.getContent().stream()
-                .map(this::convertToMaterialResponse)
-                .collect(Collectors.toList());
+        Page<MaterialResponse> materials = adminService.getMaterials(page, pageSize, status, categoryId, keyword);
 
         return ResponseEntity.ok(new PagedResponse<>(
-                content,
+                materials.getContent(),
                 materials.getNumber(),
                 materials.getSize(),
                 materials.getTotalElements(),
@@ -94,19 +115,33 @@ public class AdminController {
         ));
     }
 
+    /**
+     * 导出素材，筛选条件与素材列表相同，format 为 ndjson 或 csv
+     */
+    @GetMapping("/materials/export")
+    public void exportMaterials(
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) Long categoryId,
+            @RequestParam(required = false) String keyword,
+            HttpServletResponse response) throws IOException {
+
+        MaterialExportService.Format exportFormat = MaterialExportService.Format.of(format);
+        String fileName = "materials-" + LocalDate.now() + "." + exportFormat.getExtension();
+        response.setContentType(exportFormat.getContentType());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"");
+        materialExportService.export(exportFormat, status, categoryId, keyword, response.getOutputStream());
+    }
+
     @GetMapping("/materials/pending")
     public ResponseEntity<PagedResponse<MaterialResponse>> getPendingMaterials(
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int pageSize) {
 
-        Page<Material> materials = adminService.getPendingMaterials(page, pageSize);
-
-        List<MaterialResponse> content = materials.getContent().stream()
-                .map(this::convertToMaterialResponse)
-                .collect(Collectors.toList());
+        Page<MaterialResponse> materials = adminService.getPendingMaterials(page, pageSize);
 
         return ResponseEntity.ok(new PagedResponse<>(
-                content,
+                materials.getContent(),
                 materials.getNumber(),
                 materials.getSize(),
                 materials.getTotalElements(),
@@ -115,20 +150,63 @@ public class AdminController {
         ));
     }
 
+    // ========== 审核队列 ==========
+    /**
+     * 领取待审核素材，已持有的租约一并续期，不同管理员领取到的素材互不重复
+     */
+    @PostMapping("/moderation/claims")
+    public ResponseEntity<ModerationClaimResponse> claimMaterials(
+            @RequestParam(defaultValue = "10") int size,
+            Principal principal) {
+        return ResponseEntity.ok(moderationQueueService.claim(principal.getName(), size));
+    }
+
+    /**
+     * 释放租约，未指定 ids 时释放当前管理员持有的全部租约
+     */
+    @DeleteMapping("/moderation/claims")
+    public ResponseEntity<MessageResponse> releaseMaterials(
+            @RequestParam(required = false) List<Long> ids,
+            Principal principal) {
+        int released = moderationQueueService.release(principal.getName(), ids);
+        return ResponseEntity.ok(new MessageResponse("已释放 " + released + " 个素材"));
+    }
+
+    @GetMapping("/moderation/queue")
+    public ResponseEntity<ModerationQueueResponse> getModerationQueue() {
+        return ResponseEntity.ok(moderationQueueService.getQueueStats());
+    }
+
+    @GetMapping("/renditions/queue")
+    public ResponseEntity<RenditionQueueResponse> getRenditionQueue() {
+        return ResponseEntity.ok(renditionWorker.getQueueStats());
+    }
 
+    @PutMapping("/materials/approve")
+    public ResponseEntity<BulkReviewResponse> approveMaterials(@Valid @RequestBody BulkReviewRequest request,
+                                                               Principal principal) {
+        return ResponseEntity.ok(adminService.approveMaterials(request, principal.getName()));
+    }
+
+    @PutMapping("/materials/reject")
+    public ResponseEntity<BulkReviewResponse> rejectMaterials(@Valid @RequestBody BulkReviewRequest request,
+                                                              Principal principal) {
+        return ResponseEntity.ok(adminService.rejectMaterials(request, principal.getName()));
+    }
 
     @PutMapping("/materials/{id}/approve")
-    public ResponseEntity<MaterialResponse> approveMaterial(@PathVariable Long id) {
-        Material material = adminService.approveMaterial(id);
+    public ResponseEntity<MaterialResponse> approveMaterial(@PathVariable Long id, Principal principal) {
+        Material material = adminService.approveMaterial(id, principal.getName());
         return ResponseEntity.ok(convertToMaterialResponse(material));
     }
 
     @PutMapping("/materials/{id}/reject")
     public ResponseEntity<MaterialResponse> rejectMaterial(
             @PathVariable Long id,
-            @Valid @RequestBody ReviewRequest reviewRequest) {
+            @Valid @RequestBody ReviewRequest reviewRequest,
+            Principal principal) {
 
-        Material material = adminService.rejectMaterial(id, reviewRequest.getReason());
+        Material material = adminService.rejectMaterial(id, reviewRequest.getReason(), principal.getName());
         return ResponseEntity.ok(convertToMaterialResponse(material));
     }
 
@@ -166,6 +244,23 @@ public class AdminController {
         return ResponseEntity.ok(adminService.getStats());
     }
 
+    /**
+     * 按天、周或月返回统计序列，数据来自按天汇总表，当天的数据每次汇总时刷新
+     */
+    @GetMapping("/stats/series")
+    public ResponseEntity<StatsSeriesResponse> getStatsSeries(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "day") String granularity,
+            @RequestParam(required = false) Long categoryId) {
+        return ResponseEntity.ok(statsRollupService.getSeries(from, to, granularity, categoryId));
+    }
+
+    @GetMapping("/cache/stats")
+    public ResponseEntity<CacheStatsResponse> getCacheStats() {
+        return ResponseEntity.ok(adminService.getDetailCacheStats());
+    }
+
     // ========== 辅助方法 ==========
     private UserResponse convertToUserResponse(User user) {
         return UserResponse.builder()
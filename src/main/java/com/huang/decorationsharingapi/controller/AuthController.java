@@ -9,18 +9,22 @@ import com.huang.decorationsharingapi.dto.response.MessageResponse;
 import com.huang.decorationsharingapi.dto.response.UserResponse;
 import com.huang.decorationsharingapi.entity.User;
 import com.huang.decorationsharingapi.security.JwtTokenProvider;
+import com.huang.decorationsharingapi.service.LastLoginRecorder;
+import com.huang.decorationsharingapi.service.LoginThrottle;
+import com.huang.decorationsharingapi.service.PasswordHashingExecutor;
 import com.huang.decorationsharingapi.service.UserService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
 import java.security.Principal;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequiredArgsConstructor
@@ -30,50 +34,54 @@ public class AuthController {
     private final AuthenticationManager authenticationManager;
     private final JwtTokenProvider tokenProvider;
     private final UserService userService;
+    private final PasswordHashingExecutor passwordHashing;
+    private final LoginThrottle loginThrottle;
+    private final LastLoginRecorder lastLoginRecorder;
 
+    /**
+     * 登录，校验密码在密码哈希线程池中执行
+     */
     @PostMapping("/login")
-    public ResponseEntity<?> login(@Valid @RequestBody LoginRequest loginRequest) {
-        Authentication authentication = authenticationManager.authenticate(
-                new UsernamePasswordAuthenticationToken(
-                        loginRequest.getUsername(),
-                        loginRequest.getPassword()
-                )
-        );
-
-
-
-        SecurityContextHolder.getContext().setAuthentication(authentication);
-        String jwt = tokenProvider.generateToken(authentication);
-        UserDetails userDetails = (UserDetails) authentication.getPrincipal();
-        User user = userService.findByUsername(userDetails.getUsername());
-
-        return ResponseEntity.ok(new JwtAuthResponse(jwt, convertToUserResponse(user)));
+    public CompletableFuture<ResponseEntity<JwtAuthResponse>> login(@Valid @RequestBody LoginRequest loginRequest,
+                                                                    HttpServletRequest request) {
+        loginThrottle.acquire(request.getRemoteAddr(), loginRequest.getUsername());
+        return passwordHashing.submit(() -> {
+            Authentication authentication = authenticationManager.authenticate(
+                    new UsernamePasswordAuthenticationToken(
+                            loginRequest.getUsername(),
+                            loginRequest.getPassword()
+                    )
+            );
+
+            UserDetails userDetails = (UserDetails) authentication.getPrincipal();
+            User user = userService.findByUsername(userDetails.getUsername());
+            lastLoginRecorder.record(user.getId());
+            String jwt = tokenProvider.generateToken(user);
+
+            return ResponseEntity.ok(new JwtAuthResponse(jwt, convertToUserResponse(user)));
+        });
     }
 
+    /**
+     * 注册并自动登录，新用户直接签发令牌，不再重复校验刚设置的密码
+     */
     @PostMapping("/register")
-    public ResponseEntity<?> register(@Valid @RequestBody RegisterRequest registerRequest) {
+    public CompletableFuture<ResponseEntity<?>> register(@Valid @RequestBody RegisterRequest registerRequest) {
         if (userService.existsByUsername(registerRequest.getUsername())) {
-            return ResponseEntity.badRequest().body(new MessageResponse("用户名已被使用"));
+            return CompletableFuture.completedFuture(
+                    ResponseEntity.badRequest().body(new MessageResponse("用户名已被使用")));
         }
 
         if (userService.existsByEmail(registerRequest.getEmail())) {
-            return ResponseEntity.badRequest().body(new MessageResponse("邮箱已被使用"));
+            return CompletableFuture.completedFuture(
+                    ResponseEntity.badRequest().body(new MessageResponse("邮箱已被使用")));
         }
 
-        User user = userService.registerUser(registerRequest);
-
-        // 自动登录
-        Authentication authentication = authenticationManager.authenticate(
-                new UsernamePasswordAuthenticationToken(
-                        registerRequest.getUsername(),
-                        registerRequest.getPassword()
-                )
-        );
-
-        SecurityContextHolder.getContext().setAuthentication(authentication);
-        String jwt = tokenProvider.generateToken(authentication);
-
-        return ResponseEntity.ok(new JwtAuthResponse(jwt, convertToUserResponse(user)));
+        return passwordHashing.submit(() -> {
+            User user = userService.registerUser(registerRequest);
+            String jwt = tokenProvider.generateToken(user);
+            return ResponseEntity.ok(new JwtAuthResponse(jwt, convertToUserResponse(user)));
+        });
     }
 
     @GetMapping("/profile")
@@ -3,13 +3,17 @@ package com.huang.decorationsharingapi.controller;
 
 import com.huang.decorationsharingapi.dto.response.CategoryResponse;
 import com.huang.decorationsharingapi.entity.Category;
+import com.huang.decorationsharingapi.service.CatalogVersions;
 import com.huang.decorationsharingapi.service.CategoryService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 import java.util.stream.Collectors;
@@ -20,14 +24,20 @@ import java.util.stream.Collectors;
 public class CategoryController {
 
     private final CategoryService categoryService;
+    private final CatalogVersions catalogVersions;
 
     @GetMapping
-    public ResponseEntity<List<CategoryResponse>> getAllCategories() {
+    public ResponseEntity<List<CategoryResponse>> getAllCategories(WebRequest webRequest) {
+        // 分类没有变化时直接返回304，不查询数据库
+        if (webRequest.checkNotModified(catalogVersions.categoriesTag(), catalogVersions.getCategoriesModifiedAt())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).build();
+        }
+
         List<Category> categories = categoryService.getAllCategories();
         List<CategoryResponse> response = categories.stream()
                 .map(this::convertToCategoryResponse)
                 .collect(Collectors.toList());
-        return ResponseEntity.ok(response);
+        return ResponseEntity.ok().cacheControl(CacheControl.noCache()).body(response);
     }
 
     @GetMapping("/{id}")
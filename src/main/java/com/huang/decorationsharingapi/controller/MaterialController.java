@@ -6,19 +6,22 @@ import com.huang.decorationsharingapi.dto.response.MaterialDetailResponse;
 import com.huang.decorationsharingapi.dto.response.MaterialResponse;
 import com.huang.decorationsharingapi.dto.response.PagedResponse;
 import com.huang.decorationsharingapi.entity.Material;
+import com.huang.decorationsharingapi.service.CatalogVersions;
 import com.huang.decorationsharingapi.service.MaterialService;
-import com.huang.decorationsharingapi.repository.FavoriteRepository;
+import com.huang.decorationsharingapi.service.MaterialSort;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
 
 import javax.validation.Valid;
 import java.security.Principal;
-import java.util.List;
-import java.util.stream.Collectors;
 
 @RestController
 @RequiredArgsConstructor
@@ -26,7 +29,7 @@ import java.util.stream.Collectors;
 public class MaterialController {
 
     private final MaterialService materialService;
-    private final FavoriteRepository favoriteRepository;
+    private final CatalogVersions catalogVersions;
 
     @GetMapping
     public ResponseEntity<PagedResponse<MaterialResponse>> getMaterials(
@@ -36,7 +39,9 @@ public class MaterialController {
             @RequestParam(required = false) String sort,
             @RequestParam(required = false) String status, // 新增status参数
             @RequestParam(required = false) String keyword, // 新增keyword参数
-            Principal principal) {
+            @RequestParam(required = false) String cursor, // 传入时使用游标分页，首页传空字符串
+            Principal principal,
+            WebRequest webRequest) {
 
         // 如果没有指定状态且不是管理员，强制设置为APPROVED
         if (status == null || status.isEmpty()) {
@@ -46,15 +51,24 @@ public class MaterialController {
         // 获取用户名，用于检查收藏状态
         final String username = principal != null ? principal.getName() : null;
 
-        Page<Material> materials = materialService.getMaterials(
-                page, pageSize, categoryId, sort, status, keyword, username);
+        // 素材目录没有变化时直接返回304，不查询数据库
+        MaterialSort materialSort = MaterialSort.of(sort);
+        boolean ranked = materialSort == MaterialSort.TRENDING || materialSort == MaterialSort.POPULAR;
+        if (webRequest.checkNotModified(catalogVersions.materialsTag(username, ranked),
+                catalogVersions.getMaterialsModifiedAt(username, ranked))) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).varyBy(HttpHeaders.AUTHORIZATION).build();
+        }
 
-        List<MaterialResponse> content = materials.getContent().stream()
-                .map(material -> convertToMaterialResponse(material, username))
-                .collect(Collectors.toList());
+        if (cursor != null) {
+            return perUserRevalidated().body(materialService.getMaterialsByCursor(
+                    cursor, pageSize, categoryId, sort, status, keyword, username));
+        }
 
-        return ResponseEntity.ok(new PagedResponse<>(
-                content,
+        Page<MaterialResponse> materials = materialService.getMaterials(
+                page, pageSize, categoryId, sort, status, keyword, username);
+
+        return perUserRevalidated().body(new PagedResponse<>(
+                materials.getContent(),
                 materials.getNumber(),
                 materials.getSize(),
                 materials.getTotalElements(),
@@ -64,17 +78,20 @@ public class MaterialController {
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<MaterialDetailResponse> getMaterialById(@PathVariable Long id, Principal principal) {
+    public ResponseEntity<MaterialDetailResponse> getMaterialById(@PathVariable Long id, Principal principal,
+                                                                  WebRequest webRequest) {
         final String username = principal != null ? principal.getName() : null;
 
-        Material material = materialService.getMaterialById(id, username);
-
-        // 非管理员只能查看已审核的素材
-        if (username == null && material.getStatus() != Material.Status.APPROVED) {
-            return ResponseEntity.notFound().build();
+        // 已确认素材对当前用户可见且详情没有变化时直接返回304，不加载详情，浏览仍然计入；
+        // 无法从缓存或索引确认时加载详情，不存在或不可见的素材返回404且不计入浏览
+        String etag = catalogVersions.detailTag(id, username);
+        if (materialService.isKnownVisible(id, username) && webRequest.checkNotModified(etag)) {
+            materialService.recordView(id);
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).varyBy(HttpHeaders.AUTHORIZATION).build();
         }
 
-        return ResponseEntity.ok(convertToMaterialDetailResponse(material, username));
+        MaterialDetailResponse material = materialService.getMaterialDetail(id, username);
+        return perUserRevalidated().eTag(etag).body(material);
     }
 
     @GetMapping("/search")
@@ -83,20 +100,23 @@ public class MaterialController {
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "12") int pageSize,
             @RequestParam(required = false) Long categoryId,
+            @RequestParam(required = false) String cursor,
             Principal principal) {
 
         // 强制设置状态为APPROVED
         final String status = "APPROVED";
         final String username = principal != null ? principal.getName() : null;
 
-        Page<Material> materials = materialService.searchMaterials(keyword, page, pageSize, categoryId, status);
+        if (cursor != null) {
+            return ResponseEntity.ok(materialService.searchMaterialsByCursor(
+                    keyword, cursor, pageSize, categoryId, status, username));
+        }
 
-        List<MaterialResponse> content = materials.getContent().stream()
-                .map(material -> convertToMaterialResponse(material, username))
-                .collect(Collectors.toList());
+        Page<MaterialResponse> materials = materialService.searchMaterials(
+                keyword, page, pageSize, categoryId, status, username);
 
         return ResponseEntity.ok(new PagedResponse<>(
-                content,
+                materials.getContent(),
                 materials.getNumber(),
                 materials.getSize(),
                 materials.getTotalElements(),
@@ -113,7 +133,7 @@ public class MaterialController {
 
         final String username = principal.getName();
         Material material = materialService.uploadMaterial(materialRequest, file, username);
-        return ResponseEntity.ok(convertToMaterialResponse(material, username));
+        return ResponseEntity.ok(convertToMaterialResponse(material, false));
     }
 
     @PostMapping("/{id}/favorite")
@@ -122,13 +142,26 @@ public class MaterialController {
         return ResponseEntity.ok(new FavoriteResponse(isFavorite));
     }
 
-    private MaterialResponse convertToMaterialResponse(Material material, String currentUsername) {
-        // 检查当前用户是否收藏了该素材
-        boolean isFavorite = false;
-        if (currentUsername != null) {
-            isFavorite = materialService.checkIsFavorite(material.getId(), currentUsername);
-        }
+    @PutMapping("/{id}/favorite")
+    public ResponseEntity<FavoriteResponse> addFavorite(@PathVariable Long id, Principal principal) {
+        materialService.addFavorite(id, principal.getName());
+        return ResponseEntity.ok(new FavoriteResponse(true));
+    }
 
+    @DeleteMapping("/{id}/favorite")
+    public ResponseEntity<FavoriteResponse> removeFavorite(@PathVariable Long id, Principal principal) {
+        materialService.removeFavorite(id, principal.getName());
+        return ResponseEntity.ok(new FavoriteResponse(false));
+    }
+
+    // 响应内容与当前用户有关，客户端每次使用前都需要重新校验
+    private ResponseEntity.BodyBuilder perUserRevalidated() {
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .varyBy(HttpHeaders.AUTHORIZATION);
+    }
+
+    private MaterialResponse convertToMaterialResponse(Material material, boolean isFavorite) {
         return MaterialResponse.builder()
                 .id(material.getId())
                 .title(material.getTitle())
@@ -147,39 +180,4 @@ public class MaterialController {
                 .createdAt(material.getCreatedAt())
                 .build();
     }
-
-    private MaterialDetailResponse convertToMaterialDetailResponse(Material material, String currentUsername) {
-        // 检查当前用户是否收藏了该素材
-        boolean isFavorite = false;
-        if (currentUsername != null) {
-            isFavorite = materialService.checkIsFavorite(material.getId(), currentUsername);
-        }
-
-        return MaterialDetailResponse.builder()
-                .id(material.getId())
-                .title(material.getTitle())
-                .description(material.getDescription())
-                .imageUrl(material.getImageUrl())
-                .thumbUrl(material.getThumbUrl())
-                .categoryId(material.getCategory().getId())
-                .categoryName(material.getCategory().getName())
-                .uploader(convertToUserInfo(material))
-                .views(material.getViews())
-                .favorites(material.getFavorites())
-                .tags(material.getTags())
-                .license(material.getLicense())
-                .status(material.getStatus().name())
-                .isFavorite(isFavorite) // 正确设置收藏状态
-                .createdAt(material.getCreatedAt())
-                .build();
-    }
-
-    private MaterialDetailResponse.UserInfo convertToUserInfo(Material material) {
-        return MaterialDetailResponse.UserInfo.builder()
-                .id(material.getUser().getId())
-                .username(material.getUser().getUsername())
-                .avatar(material.getUser().getAvatar())
-                .bio(material.getUser().getBio())
-                .build();
-    }
 }
\ No newline at end of file
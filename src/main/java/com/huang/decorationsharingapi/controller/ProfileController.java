@@ -6,8 +6,6 @@ import com.huang.decorationsharingapi.dto.response.UserProfileResponse;
 import com.huang.decorationsharingapi.entity.Favorite;
 import com.huang.decorationsharingapi.entity.Material;
 import com.huang.decorationsharingapi.entity.User;
-import com.huang.decorationsharingapi.repository.FavoriteRepository;
-import com.huang.decorationsharingapi.repository.MaterialRepository;
 import com.huang.decorationsharingapi.repository.UserRepository;
 import com.huang.decorationsharingapi.service.FileStorageService;
 import com.huang.decorationsharingapi.service.UserService;
@@ -28,23 +26,19 @@ public class ProfileController {
 
     private final UserService userService;
     private final UserRepository userRepository;
-    private final MaterialRepository materialRepository;
-    private final FavoriteRepository favoriteRepository;
     private final FileStorageService fileStorageService;
     private final PasswordEncoder passwordEncoder;
 
     /**
      * 获取用户详细个人资料，包括统计信息
+     * 上传数和收藏数是用户行上维护的计数，只需读取一次用户
      */
     @GetMapping
     public ResponseEntity<UserProfileResponse> getUserProfile(Principal principal) {
         User user = userService.findByUsername(principal.getName());
 
-        // 获取用户上传的素材数量
-        long uploadCount = materialRepository.countByUser(user);
-
-        // 获取用户收藏的素材数量
-        long favoriteCount = favoriteRepository.countByUser(user);
+        long uploadCount = user.getUploadCount() == null ? 0 : user.getUploadCount();
+        long favoriteCount = user.getFavoriteCount() == null ? 0 : user.getFavoriteCount();
 
         // 获取关注者数量（暂时返回0，需要后续实现关注功能）
         long followersCount = 0;
@@ -73,14 +67,11 @@ public class ProfileController {
             Principal principal) {
 
         try {
-            User user = userService.findByUsername(principal.getName());
-
             // 存储头像文件
             String avatarFileName = fileStorageService.storeFile(file);
 
             // 更新用户头像
-            user.setAvatar(avatarFileName);
-            userRepository.save(user);
+            userService.updateAvatar(principal.getName(), avatarFileName);
 
             return ResponseEntity.ok().body(new MessageResponse("头像上传成功"));
         } catch (Exception e) {
@@ -3,7 +3,6 @@ package com.huang.decorationsharingapi.controller;
 
 import com.huang.decorationsharingapi.dto.response.MaterialResponse;
 import com.huang.decorationsharingapi.dto.response.PagedResponse;
-import com.huang.decorationsharingapi.entity.Material;
 import com.huang.decorationsharingapi.service.MaterialService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
@@ -11,8 +10,6 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.security.Principal;
-import java.util.List;
-import java.util.stream.Collectors;
 
 @RestController
 @RequiredArgsConstructor
@@ -30,15 +27,11 @@ public class UserController {
             @RequestParam(required = false) String keyword,
             Principal principal) {
 
-        Page<Material> materials = materialService.getUserMaterials(
+        Page<MaterialResponse> materials = materialService.getUserMaterials(
                 principal.getName(), page, pageSize, status, categoryId, keyword);
 
-        List<MaterialResponse> content = materials.getContent().stream()
-                .map(this::convertToMaterialResponse)
-                .collect(Collectors.toList());
-
         return ResponseEntity.ok(new PagedResponse<>(
-                content,
+                materials.getContent(),
                 materials.getNumber(),
                 materials.getSize(),
                 materials.getTotalElements(),
@@ -53,17 +46,19 @@ public class UserController {
             @RequestParam(defaultValue = "12") int pageSize,
             @RequestParam(required = false) Long categoryId,
             @RequestParam(required = false) String keyword,
+            @RequestParam(required = false) String cursor,
             Principal principal) {
 
-        Page<Material> materials = materialService.getUserFavorites(
-                principal.getName(), page, pageSize, categoryId, keyword);
+        if (cursor != null) {
+            return ResponseEntity.ok(materialService.getUserFavoritesByCursor(
+                    principal.getName(), cursor, pageSize, categoryId, keyword));
+        }
 
-        List<MaterialResponse> content = materials.getContent().stream()
-                .map(this::convertToMaterialResponse)
-                .collect(Collectors.toList());
+        Page<MaterialResponse> materials = materialService.getUserFavorites(
+                principal.getName(), page, pageSize, categoryId, keyword);
 
         return ResponseEntity.ok(new PagedResponse<>(
-                content,
+                materials.getContent(),
                 materials.getNumber(),
                 materials.getSize(),
                 materials.getTotalElements(),
@@ -71,23 +66,4 @@ public class UserController {
                 materials.isLast()
         ));
     }
-
-    private MaterialResponse convertToMaterialResponse(Material material) {
-        return MaterialResponse.builder()
-                .id(material.getId())
-                .title(material.getTitle())
-                .imageUrl(material.getImageUrl())
-                .thumbUrl(material.getThumbUrl())
-                .categoryId(material.getCategory().getId())
-                .categoryName(material.getCategory().getName())
-                .uploaderName(material.getUser().getUsername())
-                .uploaderAvatar(material.getUser().getAvatar())
-                .views(material.getViews())
-                .favorites(material.getFavorites())
-                .tags(material.getTags())
-                .status(material.getStatus().name())
-                .isFavorite(true) // 收藏列表中的项目一定是收藏的
-                .createdAt(material.getCreatedAt())
-                .build();
-    }
 }
\ No newline at end of file
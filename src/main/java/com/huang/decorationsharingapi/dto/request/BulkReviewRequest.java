@@ -0,0 +1,26 @@
+package com.huang.decorationsharingapi.dto.request;
+
+import lombok.Data;
+
+import javax.validation.constraints.Size;
+import java.util.List;
+
+/**
+ * 批量审核请求
+ * 指定 ids 时按ID处理；未指定时按分类和关键词筛选待审核素材，按提交时间从早到晚处理。
+ * 既没有 ids 也没有筛选条件的请求会被拒绝，需要处理全部待审核素材时显式传 allPending=true
+ */
+@Data
+public class BulkReviewRequest {
+    @Size(max = 2000, message = "单次最多审核2000个素材")
+    private List<Long> ids;
+
+    private Long categoryId;
+
+    private String keyword;
+
+    private boolean allPending;
+
+    @Size(max = 500, message = "拒绝原因不能超过500个字符")
+    private String reason;
+}
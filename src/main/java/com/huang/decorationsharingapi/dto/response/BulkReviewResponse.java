@@ -0,0 +1,29 @@
+package com.huang.decorationsharingapi.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkReviewResponse {
+    private int total;
+    private int updated;
+    // 按筛选条件审核时，是否还有未处理的素材
+    private boolean hasMore;
+    private List<Result> results;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Result {
+        private Long id;
+        // UPDATED: 已更新；UNCHANGED: 已是目标状态；NOT_FOUND: 素材不存在
+        private String outcome;
+    }
+}
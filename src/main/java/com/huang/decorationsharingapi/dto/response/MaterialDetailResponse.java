@@ -7,9 +7,10 @@ import lombok.NoArgsConstructor;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 public class MaterialDetailResponse {
@@ -18,6 +19,10 @@ public class MaterialDetailResponse {
     private String description;
     private String imageUrl;
     private String thumbUrl;
+    // 各宽度缩略图的地址，键为宽度 (像素)，用于按屏幕密度选择图片
+    private Map<Integer, String> renditions;
+    // 缩略图生成状态：PENDING 时 thumbUrl 为原图，renditions 为空
+    private String renditionStatus;
     private Long categoryId;
     private String categoryName;
     private UserInfo uploader;
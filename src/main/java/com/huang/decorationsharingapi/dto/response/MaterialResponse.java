@@ -1,5 +1,6 @@
 package com.huang.decorationsharingapi.dto.response;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -29,4 +30,8 @@ public class MaterialResponse {
     private String rejectReason;
     private boolean isFavorite;
     private LocalDateTime createdAt;
+
+    // 仅用于热度排序的游标分页
+    @JsonIgnore
+    private Double trendingScore;
 }
\ No newline at end of file
@@ -0,0 +1,16 @@
+package com.huang.decorationsharingapi.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ModerationClaimResponse {
+    private List<MaterialResponse> items;
+    private LocalDateTime expiresAt;
+}
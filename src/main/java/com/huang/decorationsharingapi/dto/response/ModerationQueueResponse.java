@@ -0,0 +1,21 @@
+package com.huang.decorationsharingapi.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ModerationQueueResponse {
+    private long depth;
+    private long claimed;
+    private long available;
+    // 等待时长 (秒)，队列为空时为 null
+    private Long maxAgeSeconds;
+    private Long p50AgeSeconds;
+    private Long p90AgeSeconds;
+    private Long p99AgeSeconds;
+}
@@ -1,5 +1,6 @@
 package com.huang.decorationsharingapi.dto.response;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -13,7 +14,22 @@ public class PagedResponse<T> {
     private List<T> items;
     private int page;
     private int size;
-    private long total;
-    private int totalPages;
+    private long total;      // 游标分页时不统计总数，为 -1
+    private int totalPages;  // 游标分页时不统计总数，为 -1
     private boolean last;
-}
\ No newline at end of file
+
+    // 游标分页时下一页的游标，没有下一页时为空
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String nextCursor;
+
+    public PagedResponse(List<T> items, int page, int size, long total, int totalPages, boolean last) {
+        this(items, page, size, total, totalPages, last, null);
+    }
+
+    /**
+     * 创建游标分页的响应，不包含总数
+     */
+    public static <T> PagedResponse<T> ofCursor(List<T> items, int size, String nextCursor) {
+        return new PagedResponse<>(items, 0, size, -1, -1, nextCursor == null, nextCursor);
+    }
+}
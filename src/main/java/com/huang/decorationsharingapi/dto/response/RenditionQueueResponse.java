@@ -0,0 +1,30 @@
+package com.huang.decorationsharingapi.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RenditionQueueResponse {
+    // 尚未完成的缩略图任务数（含正在处理和等待重试的）
+    private long depth;
+    private long running;
+    // 已交给线程池、等待空闲线程的任务数
+    private long queued;
+    // 最早的未完成任务的等待时长 (秒)，队列为空时为 null
+    private Long oldestAgeSeconds;
+    // 启动以来完成和最终失败的任务数
+    private long completed;
+    private long failed;
+    // 最近完成的任务从上传到缩略图就绪的耗时 (毫秒)，没有样本时为 null
+    private Long latencyP50Millis;
+    private Long latencyP90Millis;
+    private Long latencyP99Millis;
+    // 最近完成的任务生成缩略图本身的耗时 (毫秒)
+    private Long processingP50Millis;
+    private Long processingP90Millis;
+}
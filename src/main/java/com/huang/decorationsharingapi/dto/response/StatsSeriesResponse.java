@@ -0,0 +1,40 @@
+package com.huang.decorationsharingapi.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StatsSeriesResponse {
+    private LocalDate from;
+    private LocalDate to;
+    // DAY、WEEK 或 MONTH
+    private String granularity;
+    private Long categoryId;
+    private List<Point> points;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Point {
+        // 时间段的第一天，按周时为周一，按月时为当月1日
+        private LocalDate start;
+        // 新增用户数不区分分类，按分类查询时为 0
+        private long newUsers;
+        private long uploads;
+        private long approvals;
+        private long rejections;
+        private long favorites;
+        private long views;
+        // 当天上传或收藏过素材的用户数，按周、按月时为日均值
+        private double activeUsers;
+    }
+}
@@ -14,7 +14,8 @@ import java.time.LocalDateTime;
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
-@Table(name = "favorites")
+@Table(name = "favorites", uniqueConstraints = @UniqueConstraint(
+        name = "uk_favorites_user_material", columnNames = {"user_id", "material_id"}))
 public class Favorite {
 
     @Id
@@ -14,6 +14,7 @@ import javax.persistence.*;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 @Data
 @Entity
@@ -37,9 +38,19 @@ public class Material {
     @Column(name = "image_url", nullable = false)
     private String imageUrl;
 
-    @Column(name = "thumb_url")
+    // 缩略图在上传时为原图，由 RenditionWorker 生成后原地更新，保存实体时不覆盖
+    @Column(name = "thumb_url", updatable = false)
     private String thumbUrl;
 
+    // 各宽度缩略图的文件名，键为宽度 (像素)
+    @Type(type = "json")
+    @Column(columnDefinition = "json", updatable = false)
+    private Map<Integer, String> renditions;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "rendition_status", columnDefinition = "ENUM('PENDING', 'READY', 'FAILED')", updatable = false)
+    private RenditionStatus renditionStatus;
+
     @ManyToOne
     @JoinColumn(name = "category_id")
     private Category category;
@@ -48,12 +59,18 @@ public class Material {
     @JoinColumn(name = "user_id")
     private User user;
 
-    @Column(columnDefinition = "INT DEFAULT 0")
+    // 浏览量只通过 views = views + ? 增量更新，保存实体时不覆盖
+    @Column(columnDefinition = "INT DEFAULT 0", updatable = false)
     private Integer views = 0;
 
-    @Column(columnDefinition = "INT DEFAULT 0")
+    // 收藏数只随收藏记录的增删原地更新，保存实体时不覆盖
+    @Column(columnDefinition = "INT DEFAULT 0", updatable = false)
     private Integer favorites = 0;
 
+    // 热度分由 TrendingScoreUpdater 根据浏览量、收藏数和发布时间计算
+    @Column(name = "trending_score", insertable = false, updatable = false)
+    private Double trendingScore;
+
     @Type(type = "json")
     @Column(columnDefinition = "json")
     private List<String> tags = new ArrayList<>();
@@ -78,4 +95,8 @@ public class Material {
     public enum Status {
         PENDING, APPROVED, REJECTED
     }
+
+    public enum RenditionStatus {
+        PENDING, READY, FAILED
+    }
 }
\ No newline at end of file
@@ -54,10 +54,21 @@ public class User {
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
 
-    // 添加最后登录时间字段
-    @Column(name = "last_login_at")
+    // 最后登录时间由 LastLoginRecorder 批量写入，保存实体时不写入
+    @Column(name = "last_login_at", insertable = false, updatable = false)
     private LocalDateTime lastLoginAt;
 
+    // 上传数和收藏数只随素材、收藏记录的增删原地更新，由 UserCounterRepair 定期校正，保存实体时不写入
+    @Column(name = "upload_count", insertable = false, updatable = false)
+    private Integer uploadCount;
+
+    @Column(name = "favorite_count", insertable = false, updatable = false)
+    private Integer favoriteCount;
+
+    // 令牌版本：角色、状态或用户名变化时递增，使之前签发的令牌失效，保存实体时不写入
+    @Column(name = "token_version", insertable = false, updatable = false)
+    private Integer tokenVersion;
+
     public enum Role {
         USER, ADMIN
     }
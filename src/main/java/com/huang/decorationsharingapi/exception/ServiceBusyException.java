@@ -0,0 +1,17 @@
+package com.huang.decorationsharingapi.exception;
+
+/**
+ * 服务端处理能力已满，客户端应在 retryAfterSeconds 秒后重试
+ */
+public class ServiceBusyException extends RuntimeException {
+    private final long retryAfterSeconds;
+
+    public ServiceBusyException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
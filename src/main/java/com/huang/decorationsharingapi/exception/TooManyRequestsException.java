@@ -0,0 +1,17 @@
+package com.huang.decorationsharingapi.exception;
+
+/**
+ * 请求频率超过限制，客户端应在 retryAfterSeconds 秒后重试
+ */
+public class TooManyRequestsException extends RuntimeException {
+    private final long retryAfterSeconds;
+
+    public TooManyRequestsException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
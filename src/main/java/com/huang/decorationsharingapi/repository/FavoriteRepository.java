@@ -5,9 +5,17 @@ import com.huang.decorationsharingapi.entity.Favorite;
 import com.huang.decorationsharingapi.entity.Material;
 import com.huang.decorationsharingapi.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 @Repository
 public interface FavoriteRepository extends JpaRepository<Favorite, Long> {
@@ -16,4 +24,46 @@ public interface FavoriteRepository extends JpaRepository<Favorite, Long> {
     boolean existsByUserAndMaterial(User user, Material material);
     // 在 FavoriteRepository 接口中添加
     long countByUser(User user);
+
+    boolean existsByUserUsernameAndMaterialId(String username, Long materialId);
+
+    /**
+     * 一次查询出用户在给定素材中已收藏的素材ID，用于列表页批量设置收藏状态
+     */
+    @Query("SELECT f.material.id FROM Favorite f " +
+            "WHERE f.user.username = :username AND f.material.id IN :materialIds")
+    Set<Long> findFavoriteMaterialIds(@Param("username") String username,
+                                      @Param("materialIds") Collection<Long> materialIds);
+
+    /**
+     * 收藏了该素材的用户名
+     */
+    @Query("SELECT f.user.username FROM Favorite f WHERE f.material.id = :materialId")
+    List<String> findUsernamesByMaterialId(@Param("materialId") Long materialId);
+
+    /**
+     * 删除素材的全部收藏记录，加入调用方的事务
+     */
+    @Modifying
+    @Query(value = "DELETE FROM favorites WHERE material_id = :materialId", nativeQuery = true)
+    int deleteByMaterialId(@Param("materialId") Long materialId);
+
+    /**
+     * 添加收藏，依靠 (user_id, material_id) 唯一键去重
+     * @return 新插入的行数，已收藏时为0
+     */
+    @Modifying
+    @Transactional(isolation = Isolation.READ_COMMITTED)
+    @Query(value = "INSERT IGNORE INTO favorites (user_id, material_id, created_at) " +
+            "VALUES (:userId, :materialId, NOW())", nativeQuery = true)
+    int insertIfAbsent(@Param("userId") Long userId, @Param("materialId") Long materialId);
+
+    /**
+     * 取消收藏
+     * @return 删除的行数，未收藏时为0
+     */
+    @Modifying
+    @Transactional(isolation = Isolation.READ_COMMITTED)
+    @Query("DELETE FROM Favorite f WHERE f.user.id = :userId AND f.material.id = :materialId")
+    int deleteByUserIdAndMaterialId(@Param("userId") Long userId, @Param("materialId") Long materialId);
 }
\ No newline at end of file
@@ -8,14 +8,18 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 
 @Repository
-public interface MaterialRepository extends JpaRepository<Material, Long>, JpaSpecificationExecutor<Material> {
+public interface MaterialRepository extends JpaRepository<Material, Long>, JpaSpecificationExecutor<Material>,
+        MaterialRepositoryCustom {
     Page<Material> findByStatus(Material.Status status, Pageable pageable);
 
     long countByCategory(Category category);
@@ -26,14 +30,38 @@ public interface MaterialRepository extends JpaRepository<Material, Long>, JpaSp
     // 在 MaterialRepository 接口中添加
     long countByUser(User user);
 
-    @Query("SELECT m FROM Material m JOIN Favorite f ON m.id = f.material.id " +
-            "WHERE f.user.id = :userId " +
-            "AND (:categoryId IS NULL OR m.category.id = :categoryId) " +
-            "AND (:keyword IS NULL OR LOWER(m.title) LIKE LOWER(CONCAT('%', :keyword, '%')) " +
-            "    OR LOWER(m.description) LIKE LOWER(CONCAT('%', :keyword, '%')))")
-    Page<Material> findUserFavorites(
-            @Param("userId") Long userId,
-            @Param("categoryId") Long categoryId,
-            @Param("keyword") String keyword,
-            Pageable pageable);
+    /**
+     * 锁定并读取一批素材的当前状态和审核租约，用于审核
+     */
+    @Query(value = "SELECT id, status, claimed_by, claim_expires_at FROM materials WHERE id IN (:ids) FOR UPDATE",
+            nativeQuery = true)
+    List<Object[]> lockStatuses(@Param("ids") Collection<Long> ids);
+
+    /**
+     * 修改审核状态，同时清除审核租约
+     */
+    @Modifying
+    @Query(value = "UPDATE materials SET status = :#{#status.name()}, claimed_by = NULL, claim_expires_at = NULL, " +
+            "updated_at = NOW(6) WHERE id IN (:ids)", nativeQuery = true)
+    int updateStatus(@Param("ids") Collection<Long> ids, @Param("status") Material.Status status);
+
+    @Modifying
+    @Query(value = "UPDATE materials SET status = :#{#status.name()}, reject_reason = :reason, claimed_by = NULL, " +
+            "claim_expires_at = NULL, updated_at = NOW(6) WHERE id IN (:ids)", nativeQuery = true)
+    int updateStatus(@Param("ids") Collection<Long> ids, @Param("status") Material.Status status,
+                     @Param("reason") String reason);
+
+    /**
+     * 按ID顺序分批读取构建搜索索引所需的字段
+     */
+    @Query("SELECT m.id, m.title, m.description, m.tags, m.category.id, m.createdAt FROM Material m " +
+            "WHERE m.status = :status AND m.id > :afterId ORDER BY m.id")
+    List<Object[]> findSearchDocuments(@Param("status") Material.Status status,
+                                       @Param("afterId") Long afterId,
+                                       Pageable pageable);
+
+    @Query("SELECT m.id, m.title, m.description, m.tags, m.category.id, m.createdAt FROM Material m " +
+            "WHERE m.status = :status AND m.id IN :ids")
+    List<Object[]> findSearchDocuments(@Param("status") Material.Status status,
+                                       @Param("ids") Collection<Long> ids);
 }
\ No newline at end of file
@@ -0,0 +1,41 @@
+package com.huang.decorationsharingapi.repository;
+
+import com.huang.decorationsharingapi.dto.response.MaterialResponse;
+import com.huang.decorationsharingapi.entity.Material;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+
+public interface MaterialRepositoryCustom {
+
+    /**
+     * 以投影方式查询素材卡片，分类名称和上传者信息通过连接一次取出，不加载完整实体
+     * @param spec 查询条件
+     * @param pageable 分页与排序
+     * @param includeText 是否包含描述、拒绝原因等长文本字段（管理后台使用）
+     * @return 素材卡片分页
+     */
+    Page<MaterialResponse> findCards(Specification<Material> spec, Pageable pageable, boolean includeText);
+
+    /**
+     * 查询不带总数的一段素材卡片，用于游标分页
+     * @param spec 查询条件（已包含游标位置条件）
+     * @param sort 排序，需以唯一键结尾
+     * @param limit 最多返回的条数
+     * @param includeText 是否包含长文本字段
+     * @return 素材卡片列表
+     */
+    List<MaterialResponse> findCardSlice(Specification<Material> spec, Sort sort, int limit, boolean includeText);
+
+    /**
+     * 只查询符合条件的素材ID
+     * @param spec 查询条件
+     * @param sort 排序
+     * @param limit 最多返回的条数
+     * @return 素材ID列表
+     */
+    List<Long> findIds(Specification<Material> spec, Sort sort, int limit);
+}
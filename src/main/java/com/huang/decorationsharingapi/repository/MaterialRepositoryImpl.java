@@ -0,0 +1,148 @@
+package com.huang.decorationsharingapi.repository;
+
+import com.huang.decorationsharingapi.dto.response.MaterialResponse;
+import com.huang.decorationsharingapi.entity.Category;
+import com.huang.decorationsharingapi.entity.Material;
+import com.huang.decorationsharingapi.entity.User;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.data.support.PageableExecutionUtils;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Tuple;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.*;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * MaterialRepository 的自定义实现，列表页只查询卡片需要的列
+ */
+public class MaterialRepositoryImpl implements MaterialRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Page<MaterialResponse> findCards(Specification<Material> spec, Pageable pageable, boolean includeText) {
+        TypedQuery<Tuple> typedQuery = createCardQuery(spec, pageable.getSort(), includeText);
+        if (pageable.isPaged()) {
+            typedQuery.setFirstResult((int) pageable.getOffset());
+            typedQuery.setMaxResults(pageable.getPageSize());
+        }
+
+        List<MaterialResponse> content = typedQuery.getResultList().stream()
+                .map(tuple -> toCard(tuple, includeText))
+                .collect(Collectors.toList());
+
+        return PageableExecutionUtils.getPage(content, pageable, () -> count(spec));
+    }
+
+    @Override
+    public List<MaterialResponse> findCardSlice(Specification<Material> spec, Sort sort, int limit, boolean includeText) {
+        return createCardQuery(spec, sort, includeText)
+                .setMaxResults(limit)
+                .getResultList().stream()
+                .map(tuple -> toCard(tuple, includeText))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Long> findIds(Specification<Material> spec, Sort sort, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<Material> root = query.from(Material.class);
+        query.select(root.get("id"));
+
+        Predicate predicate = spec == null ? null : spec.toPredicate(root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        if (sort.isSorted()) {
+            query.orderBy(QueryUtils.toOrders(sort, root, cb));
+        }
+        return entityManager.createQuery(query).setMaxResults(limit).getResultList();
+    }
+
+    private TypedQuery<Tuple> createCardQuery(Specification<Material> spec, Sort sort, boolean includeText) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<Material> root = query.from(Material.class);
+        Join<Material, Category> category = root.join("category");
+        Join<Material, User> user = root.join("user");
+
+        List<Selection<?>> selections = new ArrayList<>();
+        selections.add(root.get("id").alias("id"));
+        selections.add(root.get("title").alias("title"));
+        selections.add(root.get("imageUrl").alias("imageUrl"));
+        selections.add(root.get("thumbUrl").alias("thumbUrl"));
+        selections.add(category.get("id").alias("categoryId"));
+        selections.add(category.get("name").alias("categoryName"));
+        selections.add(user.get("username").alias("uploaderName"));
+        selections.add(user.get("avatar").alias("uploaderAvatar"));
+        selections.add(root.get("views").alias("views"));
+        selections.add(root.get("favorites").alias("favorites"));
+        selections.add(root.get("tags").alias("tags"));
+        selections.add(root.get("status").alias("status"));
+        selections.add(root.get("createdAt").alias("createdAt"));
+        selections.add(root.get("trendingScore").alias("trendingScore"));
+        if (includeText) {
+            selections.add(root.get("description").alias("description"));
+            selections.add(root.get("rejectReason").alias("rejectReason"));
+        }
+        query.multiselect(selections);
+
+        Predicate predicate = spec == null ? null : spec.toPredicate(root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        if (sort.isSorted()) {
+            query.orderBy(QueryUtils.toOrders(sort, root, cb));
+        }
+
+        return entityManager.createQuery(query);
+    }
+
+    private long count(Specification<Material> spec) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<Material> root = query.from(Material.class);
+
+        Predicate predicate = spec == null ? null : spec.toPredicate(root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        query.select(cb.count(root));
+        return entityManager.createQuery(query).getSingleResult();
+    }
+
+    @SuppressWarnings("unchecked")
+    private MaterialResponse toCard(Tuple tuple, boolean includeText) {
+        MaterialResponse.MaterialResponseBuilder builder = MaterialResponse.builder()
+                .id(tuple.get("id", Long.class))
+                .title(tuple.get("title", String.class))
+                .imageUrl(tuple.get("imageUrl", String.class))
+                .thumbUrl(tuple.get("thumbUrl", String.class))
+                .categoryId(tuple.get("categoryId", Long.class))
+                .categoryName(tuple.get("categoryName", String.class))
+                .uploaderName(tuple.get("uploaderName", String.class))
+                .uploaderAvatar(tuple.get("uploaderAvatar", String.class))
+                .views(tuple.get("views", Integer.class))
+                .favorites(tuple.get("favorites", Integer.class))
+                .tags((List<String>) tuple.get("tags"))
+                .status(tuple.get("status", Material.Status.class).name())
+                .createdAt(tuple.get("createdAt", LocalDateTime.class))
+                .trendingScore(tuple.get("trendingScore", Double.class));
+        if (includeText) {
+            builder.description(tuple.get("description", String.class))
+                    .rejectReason(tuple.get("rejectReason", String.class));
+        }
+        return builder.build();
+    }
+}
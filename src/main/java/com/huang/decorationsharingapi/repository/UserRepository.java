@@ -3,15 +3,23 @@ package com.huang.decorationsharingapi.repository;
 import com.huang.decorationsharingapi.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.Optional;
 
 @Repository
-public interface UserRepository extends JpaRepository<User, Long>, JpaSpecificationExecutor<User> {
+public interface UserRepository extends JpaRepository<User, Long>, JpaSpecificationExecutor<User>,
+        UserRepositoryCustom {
     Optional<User> findByUsername(String username);
 
+    @Query("SELECT u.id FROM User u WHERE u.username = :username")
+    Optional<Long> findIdByUsername(@Param("username") String username);
+
     boolean existsByUsername(String username);
 
     boolean existsByEmail(String email);
@@ -19,4 +27,34 @@ public interface UserRepository extends JpaRepository<User, Long>, JpaSpecificat
     long countByCreatedAtAfter(LocalDateTime date);
 
     long countByCreatedAtBefore(LocalDateTime date);
-}
\ No newline at end of file
+
+    /**
+     * 原地增减用户的上传数，加入调用方的事务
+     */
+    @Modifying
+    @Query(value = "UPDATE users SET upload_count = upload_count + :delta WHERE id = :id", nativeQuery = true)
+    int addUploadCount(@Param("id") Long id, @Param("delta") int delta);
+
+    /**
+     * 为收藏了该素材的每个用户减少一次收藏数，在删除素材的收藏记录之前调用，加入调用方的事务
+     */
+    @Modifying
+    @Query(value = "UPDATE users u JOIN favorites f ON f.user_id = u.id "
+            + "SET u.favorite_count = u.favorite_count - 1 WHERE f.material_id = :materialId", nativeQuery = true)
+    int releaseFavoritesOf(@Param("materialId") Long materialId);
+
+    /**
+     * 原地增减用户的收藏数，由 FavoriteWriter 在收藏记录变更的同一事务中调用
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE users SET favorite_count = favorite_count + :delta WHERE id = :id", nativeQuery = true)
+    int addFavoriteCount(@Param("id") Long id, @Param("delta") int delta);
+
+    /**
+     * 递增用户的令牌版本，加入调用方的事务
+     */
+    @Modifying
+    @Query(value = "UPDATE users SET token_version = token_version + 1 WHERE id = :id", nativeQuery = true)
+    int incrementTokenVersion(@Param("id") Long id);
+}
@@ -0,0 +1,18 @@
+package com.huang.decorationsharingapi.repository;
+
+import com.huang.decorationsharingapi.dto.response.UserResponse;
+import com.huang.decorationsharingapi.entity.User;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+
+public interface UserRepositoryCustom {
+
+    /**
+     * 以投影方式查询管理后台的用户列表，只读取列表展示的列，不加载完整实体（不包含密码哈希）
+     * @param spec 查询条件
+     * @param pageable 分页与排序
+     * @return 用户分页，素材数量取自用户行上维护的上传数
+     */
+    Page<UserResponse> findSummaries(Specification<User> spec, Pageable pageable);
+}
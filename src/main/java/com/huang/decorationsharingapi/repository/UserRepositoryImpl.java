@@ -0,0 +1,97 @@
+package com.huang.decorationsharingapi.repository;
+
+import com.huang.decorationsharingapi.dto.response.UserResponse;
+import com.huang.decorationsharingapi.entity.User;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.data.support.PageableExecutionUtils;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Tuple;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * UserRepository 的自定义实现，用户列表只查询展示需要的列
+ */
+public class UserRepositoryImpl implements UserRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Page<UserResponse> findSummaries(Specification<User> spec, Pageable pageable) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<User> root = query.from(User.class);
+        query.multiselect(
+                root.get("id").alias("id"),
+                root.get("username").alias("username"),
+                root.get("email").alias("email"),
+                root.get("avatar").alias("avatar"),
+                root.get("bio").alias("bio"),
+                root.get("role").alias("role"),
+                root.get("status").alias("status"),
+                root.get("createdAt").alias("createdAt"),
+                root.get("lastLoginAt").alias("lastLoginAt"),
+                root.get("uploadCount").alias("uploadCount"));
+
+        Predicate predicate = spec == null ? null : spec.toPredicate(root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        if (pageable.getSort().isSorted()) {
+            query.orderBy(QueryUtils.toOrders(pageable.getSort(), root, cb));
+        }
+
+        TypedQuery<Tuple> typedQuery = entityManager.createQuery(query);
+        if (pageable.isPaged()) {
+            typedQuery.setFirstResult((int) pageable.getOffset());
+            typedQuery.setMaxResults(pageable.getPageSize());
+        }
+
+        List<UserResponse> content = typedQuery.getResultList().stream()
+                .map(this::toSummary)
+                .collect(Collectors.toList());
+
+        return PageableExecutionUtils.getPage(content, pageable, () -> count(spec));
+    }
+
+    private long count(Specification<User> spec) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<User> root = query.from(User.class);
+
+        Predicate predicate = spec == null ? null : spec.toPredicate(root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        query.select(cb.count(root));
+        return entityManager.createQuery(query).getSingleResult();
+    }
+
+    private UserResponse toSummary(Tuple tuple) {
+        Integer uploadCount = tuple.get("uploadCount", Integer.class);
+        return UserResponse.builder()
+                .id(tuple.get("id", Long.class))
+                .username(tuple.get("username", String.class))
+                .email(tuple.get("email", String.class))
+                .avatar(tuple.get("avatar", String.class))
+                .bio(tuple.get("bio", String.class))
+                .role(tuple.get("role", User.Role.class).name())
+                .status(tuple.get("status", User.Status.class).name())
+                .createdAt(tuple.get("createdAt", LocalDateTime.class))
+                .lastLoginAt(tuple.get("lastLoginAt", LocalDateTime.class))
+                .materialCount(uploadCount == null ? 0 : uploadCount)
+                .build();
+    }
+}
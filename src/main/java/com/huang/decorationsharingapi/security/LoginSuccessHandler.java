@@ -1,7 +1,7 @@
 package com.huang.decorationsharingapi.security;
 
-import com.huang.decorationsharingapi.entity.User;
 import com.huang.decorationsharingapi.repository.UserRepository;
+import com.huang.decorationsharingapi.service.LastLoginRecorder;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -12,24 +12,21 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.time.LocalDateTime;
 
 @Component
 @RequiredArgsConstructor
 public class LoginSuccessHandler extends SimpleUrlAuthenticationSuccessHandler {
 
     private final UserRepository userRepository;
+    private final LastLoginRecorder lastLoginRecorder;
 
     @Override
     public void onAuthenticationSuccess(HttpServletRequest request, HttpServletResponse response,
                                         Authentication authentication) throws ServletException, IOException {
-        // 更新用户最后登录时间
+        // 记录用户最后登录时间，由 LastLoginRecorder 批量写回
         UserDetails userDetails = (UserDetails) authentication.getPrincipal();
-        userRepository.findByUsername(userDetails.getUsername())
-                .ifPresent(user -> {
-                    user.setLastLoginAt(LocalDateTime.now());
-                    userRepository.save(user);
-                });
+        userRepository.findIdByUsername(userDetails.getUsername())
+                .ifPresent(lastLoginRecorder::record);
 
         super.onAuthenticationSuccess(request, response, authentication);
     }
@@ -1,15 +1,20 @@
 package com.huang.decorationsharingapi.service;
 
 
+import com.huang.decorationsharingapi.dto.request.BulkReviewRequest;
 import com.huang.decorationsharingapi.dto.request.CategoryRequest;
 import com.huang.decorationsharingapi.dto.request.UpdateUserRequest;
 import com.huang.decorationsharingapi.dto.response.AdminStatsResponse;
+import com.huang.decorationsharingapi.dto.response.BulkReviewResponse;
+import com.huang.decorationsharingapi.dto.response.CacheStatsResponse;
+import com.huang.decorationsharingapi.dto.response.MaterialResponse;
 import com.huang.decorationsharingapi.dto.response.UserResponse;
 import com.huang.decorationsharingapi.entity.Category;
 import com.huang.decorationsharingapi.entity.Material;
 import com.huang.decorationsharingapi.entity.User;
 import com.huang.decorationsharingapi.exception.ResourceNotFoundException;
 import com.huang.decorationsharingapi.repository.CategoryRepository;
+import com.huang.decorationsharingapi.repository.FavoriteRepository;
 import com.huang.decorationsharingapi.repository.MaterialRepository;
 import com.huang.decorationsharingapi.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
@@ -17,20 +22,38 @@ import org.springframework.data.domain.*;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import javax.persistence.criteria.Predicate;
+import java.sql.Timestamp;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class AdminService {
 
+    private static final int BULK_REVIEW_LIMIT = 2000;
+    // 每批在一个事务中锁定并更新的素材数
+    private static final int BULK_REVIEW_CHUNK_SIZE = 200;
+
     private final UserRepository userRepository;
     private final MaterialRepository materialRepository;
+    private final FavoriteRepository favoriteRepository;
     private final CategoryRepository categoryRepository;
+    private final MaterialSearchIndex searchIndex;
+    private final MaterialDetailCache materialDetailCache;
+    private final CatalogVersions catalogVersions;
+    private final TransactionTemplate transactionTemplate;
+    private final AdminStatsAggregate adminStats;
+    private final TokenVersionRegistry tokenVersions;
+    private final StoredFileRegistry storedFiles;
 
     // ========== 用户管理 ==========
     public Page<UserResponse> getUsers(int page, int size, String role, String status, String keyword) {
@@ -71,20 +94,13 @@ public class AdminService {
             return cb.and(predicates.toArray(new Predicate[0]));
         };
 
-        Page<User> usersPage = userRepository.findAll(spec, pageable);
-
-        // 转换为UserResponse
-        List<UserResponse> userResponses = usersPage.getContent().stream()
-                .map(user -> convertToUserResponse(user))
-                .collect(Collectors.toList());
-
-        return new PageImpl<>(userResponses, pageable, usersPage.getTotalElements());
+        return userRepository.findSummaries(spec, pageable);
     }
 
     // 将User实体转换为UserResponse
     private UserResponse convertToUserResponse(User user) {
-        // 获取用户上传的素材数量
-        Integer materialCount = (int) materialRepository.countByUser(user);
+        // 用户行上维护的上传数
+        Integer materialCount = user.getUploadCount() == null ? 0 : user.getUploadCount();
 
         // 构建UserResponse
         return UserResponse.builder()
@@ -105,12 +121,17 @@ public class AdminService {
     public UserResponse updateUser(Long id, UpdateUserRequest updateRequest) {
         User user = userRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("User", "id", id));
+        // 用户名、角色或状态变化时旧令牌失效
+        boolean credentialsChanged = false;
 
         if (updateRequest.getUsername() != null && !updateRequest.getUsername().equals(user.getUsername())) {
             if (userRepository.existsByUsername(updateRequest.getUsername())) {
                 throw new IllegalArgumentException("用户名已被使用");
             }
             user.setUsername(updateRequest.getUsername());
+            credentialsChanged = true;
+            materialDetailCache.invalidateUploaderAfterCommit(user.getId());
+            catalogVersions.materialsChangedAfterCommit();
         }
 
         if (updateRequest.getEmail() != null && !updateRequest.getEmail().equals(user.getEmail())) {
@@ -123,6 +144,7 @@ public class AdminService {
         if (updateRequest.getRole() != null) {
             try {
                 User.Role role = User.Role.valueOf(updateRequest.getRole().toUpperCase());
+                credentialsChanged |= role != user.getRole();
                 user.setRole(role);
             } catch (IllegalArgumentException e) {
                 throw new IllegalArgumentException("无效的角色");
@@ -132,12 +154,18 @@ public class AdminService {
         if (updateRequest.getStatus() != null) {
             try {
                 User.Status status = User.Status.valueOf(updateRequest.getStatus().toUpperCase());
+                credentialsChanged |= status != user.getStatus();
                 user.setStatus(status);
             } catch (IllegalArgumentException e) {
                 throw new IllegalArgumentException("无效的状态");
             }
         }
 
+        if (credentialsChanged) {
+            userRepository.incrementTokenVersion(id);
+            tokenVersions.refreshAfterCommit(id);
+        }
+
         User savedUser = userRepository.save(user);
         return convertToUserResponse(savedUser);
     }
@@ -148,12 +176,19 @@ public class AdminService {
                 .orElseThrow(() -> new ResourceNotFoundException("User", "id", id));
 
         userRepository.delete(user);
+        tokenVersions.revoke(id);
+        adminStats.userDeletedAfterCommit(user.getCreatedAt());
+        materialDetailCache.invalidateUploaderAfterCommit(id);
+        catalogVersions.materialsChangedAfterCommit();
     }
     // ========== 素材管理 ==========
-    public Page<Material> getMaterials(int page, int size, String status, Long categoryId, String keyword) {
+    public Page<MaterialResponse> getMaterials(int page, int size, String status, Long categoryId, String keyword) {
         Pageable pageable = PageRequest.of(page, size, Sort.by(Sort.Direction.DESC, "createdAt"));
+        return materialRepository.findCards(createMaterialSpecification(status, categoryId, keyword), pageable, true);
+    }
 
-        Specification<Material> spec = (root, query, cb) -> {
+    private Specification<Material> createMaterialSpecification(String status, Long categoryId, String keyword) {
+        return (root, query, cb) -> {
             List<Predicate> predicates = new ArrayList<>();
 
             // 状态筛选
@@ -183,40 +218,168 @@ public class AdminService {
 
             return cb.and(predicates.toArray(new Predicate[0]));
         };
-
-        return materialRepository.findAll(spec, pageable);
     }
 
-    public Page<Material> getPendingMaterials(int page, int size) {
+    public Page<MaterialResponse> getPendingMaterials(int page, int size) {
         Pageable pageable = PageRequest.of(page, size, Sort.by(Sort.Direction.ASC, "createdAt"));
-        return materialRepository.findByStatus(Material.Status.PENDING, pageable);
+        Specification<Material> spec = (root, query, cb) -> cb.equal(root.get("status"), Material.Status.PENDING);
+        return materialRepository.findCards(spec, pageable, true);
     }
 
     @Transactional
-    public Material approveMaterial(Long id) {
-        Material material = materialRepository.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("Material", "id", id));
-
-        material.setStatus(Material.Status.APPROVED);
-        return materialRepository.save(material);
+    public Material approveMaterial(Long id, String moderator) {
+        return reviewMaterial(id, findUserId(moderator), Material.Status.APPROVED, null);
     }
 
     @Transactional
-    public Material rejectMaterial(Long id, String reason) {
-        Material material = materialRepository.findById(id)
+    public Material rejectMaterial(Long id, String reason, String moderator) {
+        return reviewMaterial(id, findUserId(moderator), Material.Status.REJECTED, reason);
+    }
+
+    // 锁定素材行后检查审核租约，状态和租约在同一条 UPDATE 中修改
+    private Material reviewMaterial(Long id, Long moderatorId, Material.Status target, String reason) {
+        List<Object[]> rows = materialRepository.lockStatuses(Collections.singletonList(id));
+        if (rows.isEmpty()) {
+            throw new ResourceNotFoundException("Material", "id", id);
+        }
+        Object[] row = rows.get(0);
+        if (claimedByOther(row, moderatorId, LocalDateTime.now())) {
+            throw new IllegalStateException("该素材正由其他管理员审核");
+        }
+
+        adminStats.pendingChangedAfterCommit(pendingDelta(Material.Status.valueOf((String) row[1]), target));
+        if (target == Material.Status.REJECTED) {
+            materialRepository.updateStatus(Collections.singletonList(id), target, reason);
+        } else {
+            materialRepository.updateStatus(Collections.singletonList(id), target);
+        }
+        Material savedMaterial = materialRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Material", "id", id));
+        searchIndex.indexAfterCommit(savedMaterial);
+        materialDetailCache.invalidateAfterCommit(id);
+        catalogVersions.materialsChangedAfterCommit();
+        return savedMaterial;
+    }
+
+    public BulkReviewResponse approveMaterials(BulkReviewRequest request, String moderator) {
+        return reviewMaterials(request, findUserId(moderator), Material.Status.APPROVED, null);
+    }
+
+    public BulkReviewResponse rejectMaterials(BulkReviewRequest request, String moderator) {
+        if (request.getReason() == null || request.getReason().trim().isEmpty()) {
+            throw new IllegalArgumentException("拒绝原因不能为空");
+        }
+        return reviewMaterials(request, findUserId(moderator), Material.Status.REJECTED, request.getReason());
+    }
+
+    /**
+     * 批量修改审核状态
+     * 素材按批在各自的事务中锁定、判断并以一条 UPDATE 更新，全部完成后统一更新搜索索引和缓存
+     * 其他管理员持有未到期租约的素材不做修改，结果为 CLAIMED_BY_OTHER
+     */
+    private BulkReviewResponse reviewMaterials(BulkReviewRequest request, Long moderatorId,
+                                               Material.Status target, String reason) {
+        List<Long> ids;
+        boolean hasMore = false;
+        if (request.getIds() != null && !request.getIds().isEmpty()) {
+            ids = new ArrayList<>(new LinkedHashSet<>(request.getIds()));
+        } else {
+            boolean filtered = request.getCategoryId() != null
+                    || (request.getKeyword() != null && !request.getKeyword().isEmpty());
+            if (!filtered && !request.isAllPending()) {
+                throw new IllegalArgumentException("请指定素材ID或筛选条件，处理全部待审核素材需设置 allPending=true");
+            }
+            Specification<Material> spec = createMaterialSpecification(
+                    Material.Status.PENDING.name(), request.getCategoryId(), request.getKeyword());
+            ids = materialRepository.findIds(spec, Sort.by(Sort.Direction.ASC, "createdAt", "id"),
+                    BULK_REVIEW_LIMIT + 1);
+            if (ids.size() > BULK_REVIEW_LIMIT) {
+                ids = ids.subList(0, BULK_REVIEW_LIMIT);
+                hasMore = true;
+            }
+        }
+
+        Map<Long, String> outcomes = new HashMap<>();
+        List<Long> updated = new ArrayList<>();
+        try {
+            for (int from = 0; from < ids.size(); from += BULK_REVIEW_CHUNK_SIZE) {
+                List<Long> chunk = ids.subList(from, Math.min(from + BULK_REVIEW_CHUNK_SIZE, ids.size()));
+                updated.addAll(transactionTemplate.execute(tx -> reviewChunk(chunk, moderatorId, target, reason, outcomes)));
+            }
+        } finally {
+            // 已提交的批次即使后续失败也要同步索引和缓存
+            if (!updated.isEmpty()) {
+                searchIndex.index(updated);
+                materialDetailCache.invalidateAll(updated);
+                catalogVersions.materialsChanged();
+            }
+        }
+
+        List<BulkReviewResponse.Result> results = ids.stream()
+                .map(id -> new BulkReviewResponse.Result(id, outcomes.getOrDefault(id, "NOT_FOUND")))
+                .collect(Collectors.toList());
+        return BulkReviewResponse.builder()
+                .total(ids.size())
+                .updated(updated.size())
+                .hasMore(hasMore)
+                .results(results)
+                .build();
+    }
 
-        material.setStatus(Material.Status.REJECTED);
-        material.setRejectReason(reason);
-        return materialRepository.save(material);
+    // 记录本批每个素材的处理结果，返回实际更新的素材ID
+    private List<Long> reviewChunk(List<Long> chunk, Long moderatorId, Material.Status target, String reason,
+                                   Map<Long, String> outcomes) {
+        List<Long> changed = new ArrayList<>();
+        long pendingDelta = 0;
+        LocalDateTime now = LocalDateTime.now();
+        for (Object[] row : materialRepository.lockStatuses(chunk)) {
+            Long id = ((Number) row[0]).longValue();
+            if (claimedByOther(row, moderatorId, now)) {
+                outcomes.put(id, "CLAIMED_BY_OTHER");
+            } else if (target.name().equals(row[1])) {
+                outcomes.put(id, "UNCHANGED");
+            } else {
+                outcomes.put(id, "UPDATED");
+                changed.add(id);
+                pendingDelta += pendingDelta(Material.Status.valueOf((String) row[1]), target);
+            }
+        }
+        adminStats.pendingChangedAfterCommit(pendingDelta);
+        if (changed.isEmpty()) {
+            return changed;
+        }
+        if (target == Material.Status.REJECTED) {
+            materialRepository.updateStatus(changed, target, reason);
+        } else {
+            materialRepository.updateStatus(changed, target);
+        }
+        return changed;
     }
 
     @Transactional
     public void deleteMaterial(Long id) {
+        // 先锁定素材行再读取：新的收藏在插入时的外键检查处等待，下面读取和扣减的收藏记录不会再增加
+        materialRepository.lockStatuses(Collections.singletonList(id));
         Material material = materialRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Material", "id", id));
 
+        List<String> favoritedBy = favoriteRepository.findUsernamesByMaterialId(id);
+        if (!favoritedBy.isEmpty()) {
+            userRepository.releaseFavoritesOf(id);
+            favoriteRepository.deleteByMaterialId(id);
+            // 这些用户的收藏数和收藏列表都变了
+            AfterCommit.run(() -> favoritedBy.forEach(catalogVersions::favoritesChanged));
+        }
+
         materialRepository.delete(material);
+        storedFiles.release(material.getImageUrl());
+        if (material.getUser() != null) {
+            userRepository.addUploadCount(material.getUser().getId(), -1);
+        }
+        adminStats.materialDeletedAfterCommit(material.getCreatedAt(), material.getStatus());
+        searchIndex.removeAfterCommit(id);
+        materialDetailCache.invalidateAfterCommit(id);
+        catalogVersions.materialsChangedAfterCommit();
     }
 
     // ========== 分类管理 ==========
@@ -234,6 +397,7 @@ public class AdminService {
                 .sort(categoryRequest.getSort())
                 .build();
 
+        catalogVersions.categoriesChangedAfterCommit();
         return categoryRepository.save(category);
     }
 
@@ -247,12 +411,16 @@ public class AdminService {
             throw new IllegalArgumentException("分类名称已存在");
         }
 
+        if (!category.getName().equals(categoryRequest.getName())) {
+            materialDetailCache.invalidateCategoryAfterCommit(id);
+        }
         category.setName(categoryRequest.getName());
         category.setDescription(categoryRequest.getDescription());
         category.setIconUrl(categoryRequest.getIconUrl());
         category.setColor(categoryRequest.getColor());
         category.setSort(categoryRequest.getSort());
 
+        catalogVersions.categoriesChangedAfterCommit();
         return categoryRepository.save(category);
     }
 
@@ -268,34 +436,33 @@ public class AdminService {
         }
 
         categoryRepository.delete(category);
+        catalogVersions.categoriesChangedAfterCommit();
     }
 
     // ========== 统计数据 ==========
+    public CacheStatsResponse getDetailCacheStats() {
+        return materialDetailCache.getStats();
+    }
+
     public AdminStatsResponse getStats() {
-        long totalUsers = userRepository.count();
-        long totalMaterials = materialRepository.count();
-        long pendingMaterials = materialRepository.countByStatus(Material.Status.PENDING);
-
-        // 计算过去30天的活跃用户数
-        LocalDateTime thirtyDaysAgo = LocalDateTime.now().minusDays(30);
-        long activeUsers = userRepository.countByCreatedAtAfter(thirtyDaysAgo);
-
-        // 计算用户增长率
-        LocalDateTime lastMonth = LocalDateTime.now().minusMonths(1);
-        long lastMonthUsers = userRepository.countByCreatedAtBefore(lastMonth);
-        double userGrowthRate = lastMonthUsers == 0 ? 100 : (totalUsers - lastMonthUsers) * 100.0 / lastMonthUsers;
-
-        // 计算素材增长率
-        long lastMonthMaterials = materialRepository.countByCreatedAtBefore(lastMonth);
-        double materialGrowthRate = lastMonthMaterials == 0 ? 100 : (totalMaterials - lastMonthMaterials) * 100.0 / lastMonthMaterials;
-
-        return AdminStatsResponse.builder()
-                .totalUsers(totalUsers)
-                .totalMaterials(totalMaterials)
-                .pendingMaterials(pendingMaterials)
-                .activeUsers(activeUsers)
-                .userGrowth(Math.round(userGrowthRate * 10) / 10.0)  // 保留一位小数
-                .materialGrowth(Math.round(materialGrowthRate * 10) / 10.0)  // 保留一位小数
-                .build();
+        return adminStats.getStats();
+    }
+
+    // 状态从 from 变为 to 时待审核素材数的变化量
+    // lockStatuses 返回的行是否被其他管理员以未到期的租约持有
+    private static boolean claimedByOther(Object[] row, Long moderatorId, LocalDateTime now) {
+        if (row[2] == null || row[3] == null || ((Number) row[2]).longValue() == moderatorId) {
+            return false;
+        }
+        return ((Timestamp) row[3]).toLocalDateTime().isAfter(now);
+    }
+
+    private Long findUserId(String username) {
+        return userRepository.findIdByUsername(username)
+                .orElseThrow(() -> new ResourceNotFoundException("User", "username", username));
+    }
+
+    private static long pendingDelta(Material.Status from, Material.Status to) {
+        return (to == Material.Status.PENDING ? 1 : 0) - (from == Material.Status.PENDING ? 1 : 0);
     }
-}
\ No newline at end of file
+}
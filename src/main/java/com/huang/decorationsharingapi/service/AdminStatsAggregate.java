@@ -0,0 +1,203 @@
+package com.huang.decorationsharingapi.service;
+
+import com.huang.decorationsharingapi.dto.response.AdminStatsResponse;
+import com.huang.decorationsharingapi.entity.Material;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 管理后台统计数据的内存聚合
+ * 启动时从数据库加载一次，之后随注册、上传、审核和删除在事务提交后增量更新，定时与数据库校对。
+ * 近一个月内新增的用户和素材按小时分桶计数，按时间窗口统计时只需累加固定数量的桶，
+ * 窗口边界精确到小时。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AdminStatsAggregate {
+
+    // 分桶保留的天数，需覆盖最长的统计窗口（一个月）
+    private static final int BUCKET_RETENTION_DAYS = 32;
+
+    private static final String HOUR_BUCKETS_SELECT = "SELECT DATE_FORMAT(created_at, '%Y-%m-%d %H:00:00') AS hour, "
+            + "COUNT(*) AS total FROM ";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private volatile Counters counters;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void seed() {
+        reconcile();
+    }
+
+    /**
+     * 从数据库重新加载统计数据，与内存中的计数不一致时记录日志
+     * 加载期间提交的事务可能被漏计或重复计入一次，由下次校对修正
+     */
+    @Scheduled(initialDelayString = "${material.stats.reconcile-interval:600000}",
+            fixedDelayString = "${material.stats.reconcile-interval:600000}")
+    public synchronized void reconcile() {
+        LocalDateTime since = LocalDateTime.now().minusDays(BUCKET_RETENTION_DAYS).truncatedTo(ChronoUnit.HOURS);
+        Counters loaded = new Counters();
+        loaded.users.set(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM users", Long.class));
+        loaded.materials.set(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM materials", Long.class));
+        loaded.pendingMaterials.set(jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM materials WHERE status = 'PENDING'", Long.class));
+        loadHourBuckets("users", since, loaded.userHours);
+        loadHourBuckets("materials", since, loaded.materialHours);
+
+        Counters previous = counters;
+        if (previous != null && (previous.users.get() != loaded.users.get()
+                || previous.materials.get() != loaded.materials.get()
+                || previous.pendingMaterials.get() != loaded.pendingMaterials.get())) {
+            log.info("统计数据已按数据库校正: 用户 {} -> {}, 素材 {} -> {}, 待审核 {} -> {}",
+                    previous.users.get(), loaded.users.get(),
+                    previous.materials.get(), loaded.materials.get(),
+                    previous.pendingMaterials.get(), loaded.pendingMaterials.get());
+        }
+        counters = loaded;
+    }
+
+    public AdminStatsResponse getStats() {
+        Counters current = counters;
+        if (current == null) {
+            reconcile();
+            current = counters;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        long totalUsers = current.users.get();
+        long totalMaterials = current.materials.get();
+
+        // 过去30天内注册的用户数
+        long activeUsers = countSince(current.userHours, now.minusDays(30));
+
+        // 一个月前的总数 = 当前总数 - 一个月内的新增数
+        LocalDateTime lastMonth = now.minusMonths(1);
+        long lastMonthUsers = totalUsers - countSince(current.userHours, lastMonth);
+        double userGrowthRate = lastMonthUsers == 0 ? 100 : (totalUsers - lastMonthUsers) * 100.0 / lastMonthUsers;
+
+        long lastMonthMaterials = totalMaterials - countSince(current.materialHours, lastMonth);
+        double materialGrowthRate = lastMonthMaterials == 0 ? 100 : (totalMaterials - lastMonthMaterials) * 100.0 / lastMonthMaterials;
+
+        return AdminStatsResponse.builder()
+                .totalUsers(totalUsers)
+                .totalMaterials(totalMaterials)
+                .pendingMaterials(current.pendingMaterials.get())
+                .activeUsers(activeUsers)
+                .userGrowth(Math.round(userGrowthRate * 10) / 10.0)  // 保留一位小数
+                .materialGrowth(Math.round(materialGrowthRate * 10) / 10.0)  // 保留一位小数
+                .build();
+    }
+
+    // ========== 增量更新，均在当前事务提交后生效 ==========
+    public void userCreatedAfterCommit(LocalDateTime createdAt) {
+        AfterCommit.run(() -> {
+            Counters current = counters;
+            if (current != null) {
+                current.users.incrementAndGet();
+                addToBucket(current.userHours, createdAt, 1);
+            }
+        });
+    }
+
+    public void userDeletedAfterCommit(LocalDateTime createdAt) {
+        AfterCommit.run(() -> {
+            Counters current = counters;
+            if (current != null) {
+                current.users.decrementAndGet();
+                addToBucket(current.userHours, createdAt, -1);
+            }
+        });
+    }
+
+    /**
+     * 新上传的素材都处于待审核状态
+     */
+    public void materialCreatedAfterCommit(LocalDateTime createdAt) {
+        AfterCommit.run(() -> {
+            Counters current = counters;
+            if (current != null) {
+                current.materials.incrementAndGet();
+                current.pendingMaterials.incrementAndGet();
+                addToBucket(current.materialHours, createdAt, 1);
+            }
+        });
+    }
+
+    public void materialDeletedAfterCommit(LocalDateTime createdAt, Material.Status status) {
+        AfterCommit.run(() -> {
+            Counters current = counters;
+            if (current != null) {
+                current.materials.decrementAndGet();
+                if (status == Material.Status.PENDING) {
+                    current.pendingMaterials.decrementAndGet();
+                }
+                addToBucket(current.materialHours, createdAt, -1);
+            }
+        });
+    }
+
+    /**
+     * 审核状态变化
+     * @param delta 待审核素材数的变化量
+     */
+    public void pendingChangedAfterCommit(long delta) {
+        if (delta == 0) {
+            return;
+        }
+        AfterCommit.run(() -> {
+            Counters current = counters;
+            if (current != null) {
+                current.pendingMaterials.addAndGet(delta);
+            }
+        });
+    }
+
+    private void loadHourBuckets(String table, LocalDateTime since, Map<LocalDateTime, AtomicLong> buckets) {
+        jdbcTemplate.query(HOUR_BUCKETS_SELECT + table + " WHERE created_at >= ? GROUP BY hour", rs -> {
+            LocalDateTime hour = LocalDateTime.parse(rs.getString("hour").replace(' ', 'T'));
+            buckets.put(hour, new AtomicLong(rs.getLong("total")));
+        }, Timestamp.valueOf(since));
+    }
+
+    private static void addToBucket(NavigableMap<LocalDateTime, AtomicLong> buckets, LocalDateTime createdAt,
+                                    long delta) {
+        if (createdAt == null
+                || createdAt.isBefore(LocalDateTime.now().minusDays(BUCKET_RETENTION_DAYS))) {
+            return;
+        }
+        buckets.computeIfAbsent(createdAt.truncatedTo(ChronoUnit.HOURS), hour -> new AtomicLong())
+                .addAndGet(delta);
+    }
+
+    // 累加起始时间所在小时及之后的桶，桶数不超过保留天数 × 24
+    private static long countSince(NavigableMap<LocalDateTime, AtomicLong> buckets, LocalDateTime since) {
+        long total = 0;
+        for (AtomicLong count : buckets.tailMap(since.truncatedTo(ChronoUnit.HOURS), true).values()) {
+            total += count.get();
+        }
+        return total;
+    }
+
+    private static class Counters {
+        private final AtomicLong users = new AtomicLong();
+        private final AtomicLong materials = new AtomicLong();
+        private final AtomicLong pendingMaterials = new AtomicLong();
+        private final ConcurrentSkipListMap<LocalDateTime, AtomicLong> userHours = new ConcurrentSkipListMap<>();
+        private final ConcurrentSkipListMap<LocalDateTime, AtomicLong> materialHours = new ConcurrentSkipListMap<>();
+    }
+}
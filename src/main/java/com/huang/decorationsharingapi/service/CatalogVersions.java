@@ -0,0 +1,134 @@
+package com.huang.decorationsharingapi.service;
+
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 分类和素材目录的版本号
+ * 目录内容每次变化时递增版本并记录变化时间，条件请求的 ETag 和 Last-Modified 直接由它们生成，
+ * 校验时不需要查询数据或序列化响应体。版本号只保存在内存中，ETag 带上启动时间以区分不同的进程。
+ * <p>
+ * 素材版本只在内容、状态和审核结果变化时递增，浏览量和收藏数不参与校验，
+ * 否则正常访问下版本每隔几秒就会变化，304 几乎不会出现。
+ * 影响列表顺序的热度分刷新单独计入排名版本，只用于按热度和浏览量排序的列表；
+ * 列表和详情中的收藏状态因用户而异，按用户记录收藏版本。
+ */
+@Service
+public class CatalogVersions {
+
+    // 记录收藏版本的用户数上限
+    private static final int MAX_FAVORITE_USERS = 100000;
+
+    private final String bootId = Long.toString(System.currentTimeMillis(), 36);
+
+    private final AtomicLong categoryVersion = new AtomicLong();
+    private final AtomicLong materialVersion = new AtomicLong();
+    private final AtomicLong rankingVersion = new AtomicLong();
+    private volatile long categoriesModifiedAt = System.currentTimeMillis();
+    private volatile long materialsModifiedAt = categoriesModifiedAt;
+    private volatile long rankingModifiedAt = categoriesModifiedAt;
+
+    // 用户收藏版本取自单调递增的毫秒时钟，同时用作收藏状态的变化时间
+    private final AtomicLong favoriteClock = new AtomicLong(categoriesModifiedAt);
+    // 被淘汰的用户以 favoriteFloor 作为收藏版本，它不小于任何已淘汰的版本，淘汰后旧的 ETag 不会重新匹配
+    private long favoriteFloor = categoriesModifiedAt;
+    private final Map<String, Long> favoriteVersions = new LinkedHashMap<String, Long>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+            if (size() > MAX_FAVORITE_USERS) {
+                favoriteFloor = Math.max(favoriteFloor, eldest.getValue());
+                return true;
+            }
+            return false;
+        }
+    };
+
+    public void categoriesChangedAfterCommit() {
+        AfterCommit.run(() -> {
+            categoriesModifiedAt = System.currentTimeMillis();
+            categoryVersion.incrementAndGet();
+        });
+    }
+
+    /**
+     * 素材的内容、状态或审核结果发生变化
+     */
+    public void materialsChanged() {
+        materialsModifiedAt = System.currentTimeMillis();
+        materialVersion.incrementAndGet();
+    }
+
+    public void materialsChangedAfterCommit() {
+        AfterCommit.run(this::materialsChanged);
+    }
+
+    /**
+     * 热度分刷新后，按热度和浏览量排序的列表顺序可能变化
+     */
+    public void rankingChanged() {
+        rankingModifiedAt = System.currentTimeMillis();
+        rankingVersion.incrementAndGet();
+    }
+
+    /**
+     * 用户收藏或取消收藏后，该用户看到的收藏状态变化
+     */
+    public void favoritesChanged(String username) {
+        long version = favoriteClock.updateAndGet(previous -> Math.max(previous + 1, System.currentTimeMillis()));
+        synchronized (favoriteVersions) {
+            favoriteVersions.put(username, version);
+        }
+    }
+
+    public String categoriesTag() {
+        return "\"c-" + bootId + "-" + categoryVersion.get() + "\"";
+    }
+
+    public long getCategoriesModifiedAt() {
+        return categoriesModifiedAt;
+    }
+
+    /**
+     * 素材列表的 ETag，卡片中的分类名称和收藏状态也会变化，因此包含分类版本和当前用户的收藏版本
+     * @param ranked 列表是否按热度分或浏览量排序
+     */
+    public String materialsTag(String username, boolean ranked) {
+        return "\"m-" + bootId + "-" + materialVersion.get() + "-" + categoryVersion.get()
+                + (ranked ? "-r" + rankingVersion.get() : "") + userPart(username) + "\"";
+    }
+
+    public long getMaterialsModifiedAt(String username, boolean ranked) {
+        long modifiedAt = Math.max(materialsModifiedAt, categoriesModifiedAt);
+        if (ranked) {
+            modifiedAt = Math.max(modifiedAt, rankingModifiedAt);
+        }
+        return username == null ? modifiedAt : Math.max(modifiedAt, favoriteVersion(username));
+    }
+
+    /**
+     * 素材详情的 ETag，不需要加载详情即可生成
+     * 详情中的分类名称、上传者资料和审核状态随素材或分类版本变化，收藏状态随当前用户的收藏版本变化；
+     * 浏览量和收藏数变化时标签不变，因此使用弱验证器
+     */
+    public String detailTag(Long materialId, String username) {
+        return "W/\"d-" + bootId + "-" + materialId + "-" + materialVersion.get() + "-" + categoryVersion.get()
+                + userPart(username) + "\"";
+    }
+
+    private String userPart(String username) {
+        if (username == null) {
+            return "-0";
+        }
+        return "-" + Integer.toHexString(username.hashCode()) + "-" + favoriteVersion(username);
+    }
+
+    private long favoriteVersion(String username) {
+        synchronized (favoriteVersions) {
+            Long version = favoriteVersions.get(username);
+            return version != null ? version : favoriteFloor;
+        }
+    }
+}
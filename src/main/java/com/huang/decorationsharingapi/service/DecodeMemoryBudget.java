@@ -0,0 +1,46 @@
+package com.huang.decorationsharingapi.service;
+
+import com.huang.decorationsharingapi.exception.FileStorageException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.Semaphore;
+
+/**
+ * 图片解码的全局内存预算
+ * 解码前按解码后的像素数申请内存，预算不足时阻塞等待其他图片处理完成，
+ * 同时处理的图片占用的堆内存总量不超过配置的上限。
+ */
+@Service
+public class DecodeMemoryBudget {
+
+    // 信号量以 KB 计数，避免大预算超出 int 范围
+    private static final long UNIT = 1024;
+
+    private final Semaphore permits;
+    private final int totalPermits;
+
+    public DecodeMemoryBudget(@Value("${file.decode-memory-budget:268435456}") long budgetBytes) {
+        this.totalPermits = (int) Math.max(1, Math.min(Integer.MAX_VALUE, budgetBytes / UNIT));
+        this.permits = new Semaphore(totalPermits, true);
+    }
+
+    /**
+     * 申请解码所需的内存，单张图片超过总预算时按总预算申请，独占预算执行
+     * @return 申请到的份额，处理完成后交给 release 归还
+     */
+    public int acquire(long bytes) {
+        int requested = (int) Math.min(totalPermits, Math.max(1, (bytes + UNIT - 1) / UNIT));
+        try {
+            permits.acquire(requested);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FileStorageException("等待解码内存时被中断", e);
+        }
+        return requested;
+    }
+
+    public void release(int acquired) {
+        permits.release(acquired);
+    }
+}
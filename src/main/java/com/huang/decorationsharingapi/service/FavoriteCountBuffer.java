@@ -0,0 +1,107 @@
+package com.huang.decorationsharingapi.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 素材收藏数的写回缓冲
+ * 收藏记录提交后只在内存中按素材累计增减，由定时任务批量执行 favorites = favorites + ? 写回数据库，
+ * 热门素材上的并发收藏不再争用同一素材行。读取时以数据库中的值加上尚未写回的增量作为当前收藏数。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class FavoriteCountBuffer {
+
+    private static final String UPDATE_SQL = "UPDATE materials SET favorites = favorites + ? WHERE id = ?";
+
+    // 计数器已被移出缓冲，增减方需要重新获取
+    private static final long RETIRED = Long.MIN_VALUE;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final MaterialDetailCache materialDetailCache;
+    private final TrendingScoreUpdater trendingScoreUpdater;
+
+    private final ConcurrentHashMap<Long, AtomicLong> pending = new ConcurrentHashMap<>();
+
+    /**
+     * 在收藏记录的变更提交后调用
+     */
+    public void add(Long materialId, long delta) {
+        while (true) {
+            AtomicLong counter = pending.computeIfAbsent(materialId, id -> new AtomicLong());
+            long value = counter.get();
+            if (value == RETIRED) {
+                pending.remove(materialId, counter);
+                continue;
+            }
+            if (counter.compareAndSet(value, value + delta)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 获取尚未写回数据库的收藏增量，可能为负数
+     */
+    public long getPending(Long materialId) {
+        AtomicLong counter = pending.get(materialId);
+        if (counter == null) {
+            return 0;
+        }
+        long value = counter.get();
+        return value == RETIRED ? 0 : value;
+    }
+
+    /**
+     * 将缓冲中的增量在一个事务中批量写回数据库，按素材ID排序以避免与其他更新互相死锁
+     */
+    @Scheduled(fixedDelayString = "${material.favorites.flush-interval:2000}")
+    public synchronized void flush() {
+        Map<Long, Long> deltas = new TreeMap<>();
+        for (Map.Entry<Long, AtomicLong> entry : pending.entrySet()) {
+            AtomicLong counter = entry.getValue();
+            long delta = counter.getAndSet(0);
+            if (delta != 0) {
+                deltas.put(entry.getKey(), delta);
+            } else if (counter.compareAndSet(0, RETIRED)) {
+                // 上一轮之后没有新的收藏变更，移出缓冲
+                pending.remove(entry.getKey(), counter);
+            }
+        }
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        List<Object[]> batchArgs = new ArrayList<>(deltas.size());
+        deltas.forEach((materialId, delta) -> batchArgs.add(new Object[]{delta, materialId}));
+        try {
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(UPDATE_SQL, batchArgs));
+        } catch (RuntimeException ex) {
+            // 写回失败时事务已整体回滚，放回缓冲，下次重试
+            log.error("收藏数写回失败，{} 个素材的增量将在下次重试", deltas.size(), ex);
+            deltas.forEach(this::add);
+            return;
+        }
+        materialDetailCache.invalidateAll(deltas.keySet());
+        trendingScoreUpdater.markDirty(deltas.keySet());
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+}
@@ -0,0 +1,61 @@
+package com.huang.decorationsharingapi.service;
+
+import com.huang.decorationsharingapi.exception.ResourceNotFoundException;
+import com.huang.decorationsharingapi.repository.FavoriteRepository;
+import com.huang.decorationsharingapi.repository.MaterialRepository;
+import com.huang.decorationsharingapi.repository.UserRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
+
+/**
+ * 收藏记录与用户收藏数的写入
+ * 收藏记录的增删和用户收藏数的原地增减在同一个短事务中完成，任一语句失败时一起回滚；
+ * 素材收藏数由调用方在提交后计入 FavoriteCountBuffer，不锁定素材行，热门素材上的收藏互不等待。
+ * 添加和取消都先更新用户收藏数再修改收藏记录，两条路径按同样的顺序加锁：
+ * 插入收藏记录时的外键检查会对用户行加共享锁，之后再更新用户行需要升级为排他锁，同一用户的并发收藏会互相死锁；
+ * 取消时若先删除记录，又会与先持有用户行、再等待同一条收藏记录的添加互相死锁。
+ * 收藏记录没有变化时回滚事务，撤销收藏数的增减。
+ */
+@Service
+@RequiredArgsConstructor
+public class FavoriteWriter {
+
+    private final FavoriteRepository favoriteRepository;
+    private final MaterialRepository materialRepository;
+    private final UserRepository userRepository;
+
+    /**
+     * 添加收藏，已收藏时不做任何修改
+     * @return 新插入的收藏记录数
+     */
+    @Transactional(isolation = Isolation.READ_COMMITTED)
+    public int insert(Long userId, Long materialId) {
+        userRepository.addFavoriteCount(userId, 1);
+        int rows = favoriteRepository.insertIfAbsent(userId, materialId);
+        if (rows == 0) {
+            // 已经收藏过，或素材不存在 (INSERT IGNORE 同样忽略外键错误)
+            TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+            if (!materialRepository.existsById(materialId)) {
+                throw new ResourceNotFoundException("Material", "id", materialId);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * 取消收藏，未收藏时不做任何修改
+     * @return 删除的收藏记录数
+     */
+    @Transactional(isolation = Isolation.READ_COMMITTED)
+    public int delete(Long userId, Long materialId) {
+        userRepository.addFavoriteCount(userId, -1);
+        int rows = favoriteRepository.deleteByUserIdAndMaterialId(userId, materialId);
+        if (rows == 0) {
+            TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+        }
+        return rows;
+    }
+}
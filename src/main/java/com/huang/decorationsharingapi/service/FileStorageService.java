@@ -1,6 +1,10 @@
 package com.huang.decorationsharingapi.service;
 
 import com.huang.decorationsharingapi.exception.FileStorageException;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
@@ -8,21 +12,42 @@ import org.springframework.web.multipart.MultipartFile;
 
 import javax.annotation.PostConstruct;
 import javax.imageio.ImageIO;
-import java.awt.*;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
+@Slf4j
 @Service
+@RequiredArgsConstructor
 public class FileStorageService {
 
+    // 估算解码内存时每个像素的字节数：解码结果与缩放时的第一张中间图各按 4 字节计
+    private static final long DECODE_BYTES_PER_PIXEL = 8;
+
+    private final DecodeMemoryBudget decodeMemoryBudget;
+
     @Value("${file.upload-dir}")
     private String uploadDir;
 
@@ -32,6 +57,18 @@ public class FileStorageService {
     @Value("${file.max-size}")
     private long maxFileSize;
 
+    // 素材图片生成的缩略图宽度
+    @Value("${file.rendition-widths:150,300,600,1200}")
+    private int[] renditionWidths;
+
+    // 作为列表页缩略图 (thumb_url) 的宽度，须包含在 rendition-widths 中
+    @Value("${file.thumbnail-width:300}")
+    private int thumbnailWidth;
+
+    // 单张图片解码后的像素数上限，超过时加大抽样间隔
+    @Value("${file.max-decode-pixels:16000000}")
+    private long maxDecodePixels;
+
     private Path fileStorageLocation;
     private List<String> allowedTypes;
 
@@ -66,32 +103,189 @@ public class FileStorageService {
         }
     }
 
-    public String createThumbnail(MultipartFile file) {
+    /**
+     * 将素材原图写入上传目录的临时文件，写入的同时计算 SHA-256，并读取图片头部确认可以解码
+     * 文件名为内容摘要加图片格式的扩展名，相同内容的上传得到相同的文件名；
+     * 临时文件由 commitStaged 移动到该文件名，或由 discardStaged 删除
+     */
+    public StagedImage stageImage(MultipartFile file) {
         validateFile(file);
 
-        // 生成唯一文件名
         String originalFileName = StringUtils.cleanPath(file.getOriginalFilename());
-        String fileExtension = getFileExtension(originalFileName);
-        String thumbFileName = "thumb_" + UUID.randomUUID().toString() + "." + fileExtension;
+        Path tempFile = null;
+        try {
+            tempFile = Files.createTempFile(this.fileStorageLocation, "upload-", ".tmp");
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            try (InputStream input = new DigestInputStream(file.getInputStream(), digest)) {
+                Files.copy(input, tempFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+            String suffix = readableSuffix(tempFile);
+            if (suffix == null) {
+                throw new FileStorageException("无法识别的图片文件 " + originalFileName);
+            }
+            String fileName = String.format("%064x", new BigInteger(1, digest.digest())) + "." + suffix;
+            return new StagedImage(tempFile, fileName);
+        } catch (IOException | NoSuchAlgorithmException | RuntimeException ex) {
+            if (tempFile != null) {
+                deleteFiles(Collections.singletonList(tempFile.getFileName().toString()));
+            }
+            if (ex instanceof FileStorageException) {
+                throw (FileStorageException) ex;
+            }
+            throw new FileStorageException("无法存储文件 " + originalFileName, ex);
+        }
+    }
 
+    /**
+     * 将临时文件移动到按内容命名的位置，同样内容的文件已存在时直接删除临时文件
+     * @return 是否由本次调用新建了该文件
+     */
+    public boolean commitStaged(StagedImage staged) {
+        Path targetLocation = this.fileStorageLocation.resolve(staged.getFileName());
         try {
-            // 读取原图并创建缩略图
-            BufferedImage originalImage = ImageIO.read(file.getInputStream());
-            int thumbWidth = 300;
-            int thumbHeight = (int) (originalImage.getHeight() * (thumbWidth / (double) originalImage.getWidth()));
+            if (Files.exists(targetLocation)) {
+                Files.delete(staged.getTempFile());
+                return false;
+            }
+            Files.move(staged.getTempFile(), targetLocation, StandardCopyOption.REPLACE_EXISTING);
+            return true;
+        } catch (IOException ex) {
+            throw new FileStorageException("无法存储文件 " + staged.getFileName(), ex);
+        }
+    }
 
-            BufferedImage thumbnail = new BufferedImage(thumbWidth, thumbHeight, BufferedImage.TYPE_INT_RGB);
-            Graphics2D g = thumbnail.createGraphics();
-            g.drawImage(originalImage.getScaledInstance(thumbWidth, thumbHeight, Image.SCALE_SMOOTH), 0, 0, null);
-            g.dispose();
+    public void discardStaged(StagedImage staged) {
+        deleteFiles(Collections.singletonList(staged.getTempFile().getFileName().toString()));
+    }
 
-            // 保存缩略图
-            Path targetLocation = this.fileStorageLocation.resolve(thumbFileName);
-            ImageIO.write(thumbnail, fileExtension, targetLocation.toFile());
+    /**
+     * 为已存储的原图生成各宽度的缩略图
+     * 先从图片头部读取尺寸，再按最大的缩略图宽度隔行隔列抽样解码，解码后的图片只比所需尺寸大 2~4 倍，
+     * 与原图分辨率无关；所有缩略图都由同一张解码后的图片缩放得到。
+     * 比原图更宽的缩略图不生成；原图不足缩略图宽度时以原图作为缩略图，不解码。
+     * 缩略图先写入本次调用独占的临时文件，全部成功后再移动到按原图命名的位置，失败时只删除临时文件；
+     * 按内容命名的缩略图可能已被其他素材引用，不能在失败时删除。
+     */
+    public StoredImage createRenditions(String fileName) {
+        String fileExtension = getFileExtension(fileName);
+        String baseName = fileName.substring(0, fileName.length() - fileExtension.length() - 1);
+        Map<String, Path> written = new LinkedHashMap<>();
 
-            return thumbFileName;
-        } catch (IOException ex) {
-            throw new FileStorageException("无法创建缩略图 " + thumbFileName, ex);
+        try (ImageInputStream input = ImageIO.createImageInputStream(this.fileStorageLocation.resolve(fileName).toFile())) {
+            Iterator<ImageReader> readers = input == null ? Collections.emptyIterator() : ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                throw new FileStorageException("无法识别的图片文件 " + fileName);
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input);
+                int originalWidth = reader.getWidth(0);
+                int originalHeight = reader.getHeight(0);
+
+                int largestWidth = 0;
+                for (int width : renditionWidths) {
+                    if (width < originalWidth) {
+                        largestWidth = Math.max(largestWidth, width);
+                    }
+                }
+                Map<Integer, String> renditions = new TreeMap<>();
+                if (largestWidth == 0) {
+                    return new StoredImage(fileName, fileName, renditions);
+                }
+
+                int subsampling = subsampling(originalWidth, originalHeight, largestWidth);
+                long decodedPixels = (long) ceilDiv(originalWidth, subsampling) * ceilDiv(originalHeight, subsampling);
+                int acquired = decodeMemoryBudget.acquire(decodedPixels * DECODE_BYTES_PER_PIXEL);
+                try {
+                    ImageReadParam param = reader.getDefaultReadParam();
+                    param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                    BufferedImage decodedImage = reader.read(0, param);
+
+                    for (int width : renditionWidths) {
+                        if (width >= originalWidth) {
+                            continue;
+                        }
+                        String renditionFileName = baseName + "_w" + width + "." + fileExtension;
+                        Path tempFile = Files.createTempFile(this.fileStorageLocation, "rendition-", ".tmp");
+                        written.put(renditionFileName, tempFile);
+                        // 没有对应格式的编码器时 ImageIO.write 返回 false，临时文件为空
+                        if (!ImageIO.write(ImageScaler.scaleToWidth(decodedImage, width), fileExtension,
+                                tempFile.toFile())) {
+                            throw new FileStorageException("无法写入缩略图 " + renditionFileName);
+                        }
+                        renditions.put(width, renditionFileName);
+                    }
+                } finally {
+                    decodeMemoryBudget.release(acquired);
+                }
+                for (Map.Entry<String, Path> entry : written.entrySet()) {
+                    Files.move(entry.getValue(), this.fileStorageLocation.resolve(entry.getKey()),
+                            StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                }
+
+                String thumbFileName = renditions.getOrDefault(thumbnailWidth, fileName);
+                return new StoredImage(fileName, thumbFileName, renditions);
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException | RuntimeException ex) {
+            // 删除尚未移动到位的临时文件
+            deleteFiles(written.values().stream()
+                    .map(path -> path.getFileName().toString())
+                    .collect(Collectors.toList()));
+            if (ex instanceof FileStorageException) {
+                throw (FileStorageException) ex;
+            }
+            throw new FileStorageException("无法生成缩略图 " + fileName, ex);
+        }
+    }
+
+    // 抽样间隔：解码后的宽度不小于最大缩略图宽度的 2 倍，缩放时仍有像素可供平均；
+    // 同时解码后的像素数不超过 max-decode-pixels，细长的图片也不会占用过多内存
+    private int subsampling(int originalWidth, int originalHeight, int largestWidth) {
+        int subsampling = Math.max(1, originalWidth / (2 * largestWidth));
+        while ((long) ceilDiv(originalWidth, subsampling) * ceilDiv(originalHeight, subsampling) > maxDecodePixels) {
+            subsampling++;
+        }
+        return subsampling;
+    }
+
+    private static int ceilDiv(int value, int divisor) {
+        return (value + divisor - 1) / divisor;
+    }
+
+    /**
+     * 删除上传目录中的文件，删除失败只记录日志
+     */
+    public void deleteFiles(Collection<String> fileNames) {
+        for (String fileName : fileNames) {
+            try {
+                Files.deleteIfExists(this.fileStorageLocation.resolve(fileName));
+            } catch (IOException ex) {
+                log.warn("无法删除文件 {}", fileName, ex);
+            }
+        }
+    }
+
+    // 只解析图片头部，不解码像素，返回图片格式的扩展名，无法识别时返回 null
+    private String readableSuffix(Path path) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(path.toFile())) {
+            Iterator<ImageReader> readers = input == null ? Collections.emptyIterator() : ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input);
+                if (reader.getWidth(0) <= 0 || reader.getHeight(0) <= 0) {
+                    return null;
+                }
+                return reader.getOriginatingProvider().getFileSuffixes()[0].toLowerCase();
+            } catch (IOException ex) {
+                return null;
+            } finally {
+                reader.dispose();
+            }
         }
     }
 
@@ -148,4 +342,25 @@ public class FileStorageService {
             throw new FileStorageException("无法存储头像文件 " + fileName, ex);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * 已存储的素材图片：原图、列表页缩略图和按宽度索引的全部缩略图的文件名
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class StoredImage {
+        private final String fileName;
+        private final String thumbFileName;
+        private final Map<Integer, String> renditions;
+    }
+
+    /**
+     * 已写入临时文件、尚未按内容命名的素材原图
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class StagedImage {
+        private final Path tempFile;
+        private final String fileName;
+    }
+}
@@ -0,0 +1,102 @@
+package com.huang.decorationsharingapi.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 最后登录时间的写回缓冲
+ * 登录只在内存中记下每个用户最近一次的登录时间，由定时任务合并成多行 UPDATE 写回数据库，
+ * 写库次数取决于每个周期内登录的用户数，而不是登录次数。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class LastLoginRecorder {
+
+    // 每条 UPDATE 语句更新的用户数
+    private static final int BATCH_SIZE = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final ConcurrentHashMap<Long, LocalDateTime> pending = new ConcurrentHashMap<>();
+
+    public void record(Long userId) {
+        pending.merge(userId, LocalDateTime.now(), LastLoginRecorder::latest);
+    }
+
+    /**
+     * 将缓冲中的登录时间写回数据库，按用户ID排序以避免与其他更新互相死锁
+     */
+    @Scheduled(fixedDelayString = "${material.users.last-login-flush-interval:5000}")
+    public synchronized void flush() {
+        Map<Long, LocalDateTime> drained = new TreeMap<>();
+        for (Map.Entry<Long, LocalDateTime> entry : pending.entrySet()) {
+            // 移除期间有新的登录时保留新值，留到下一轮写回
+            if (pending.remove(entry.getKey(), entry.getValue())) {
+                drained.put(entry.getKey(), entry.getValue());
+            }
+        }
+        if (drained.isEmpty()) {
+            return;
+        }
+
+        List<Map.Entry<Long, LocalDateTime>> entries = new ArrayList<>(drained.entrySet());
+        for (int from = 0; from < entries.size(); from += BATCH_SIZE) {
+            List<Map.Entry<Long, LocalDateTime>> batch = entries.subList(from, Math.min(from + BATCH_SIZE, entries.size()));
+            try {
+                jdbcTemplate.update(buildUpdateSql(batch.size()), buildArgs(batch));
+            } catch (RuntimeException ex) {
+                // 写回失败时放回缓冲，下次重试
+                log.error("最后登录时间写回失败，{} 个用户将在下次重试", batch.size(), ex);
+                batch.forEach(entry -> pending.merge(entry.getKey(), entry.getValue(), LastLoginRecorder::latest));
+            }
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    // UPDATE users SET last_login_at = CASE id WHEN ? THEN ? ... END WHERE id IN (?, ...)
+    private static String buildUpdateSql(int rows) {
+        StringBuilder sql = new StringBuilder("UPDATE users SET last_login_at = CASE id");
+        for (int i = 0; i < rows; i++) {
+            sql.append(" WHEN ? THEN ?");
+        }
+        sql.append(" ELSE last_login_at END WHERE id IN (")
+                .append(String.join(", ", Collections.nCopies(rows, "?")))
+                .append(')');
+        return sql.toString();
+    }
+
+    private static Object[] buildArgs(List<Map.Entry<Long, LocalDateTime>> batch) {
+        Object[] args = new Object[batch.size() * 3];
+        int i = 0;
+        for (Map.Entry<Long, LocalDateTime> entry : batch) {
+            args[i++] = entry.getKey();
+            args[i++] = Timestamp.valueOf(entry.getValue());
+        }
+        for (Map.Entry<Long, LocalDateTime> entry : batch) {
+            args[i++] = entry.getKey();
+        }
+        return args;
+    }
+
+    private static LocalDateTime latest(LocalDateTime a, LocalDateTime b) {
+        return a.isAfter(b) ? a : b;
+    }
+}
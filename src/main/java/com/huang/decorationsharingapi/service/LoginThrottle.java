@@ -0,0 +1,97 @@
+package com.huang.decorationsharingapi.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.huang.decorationsharingapi.exception.TooManyRequestsException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 登录频率限制
+ * 按客户端IP和用户名分别维护令牌桶，每次登录尝试各消耗一个令牌，令牌按固定速率补充。
+ * 桶在补满所需的时间内无人访问即被淘汰，淘汰后重新创建的桶是满的，与继续保留等价。
+ */
+@Service
+public class LoginThrottle {
+
+    private static final long MAX_TRACKED_KEYS = 100_000;
+
+    private final Cache<String, TokenBucket> ipBuckets;
+    private final Cache<String, TokenBucket> usernameBuckets;
+    private final int ipCapacity;
+    private final double ipRefillPerNano;
+    private final int usernameCapacity;
+    private final double usernameRefillPerNano;
+
+    public LoginThrottle(@Value("${material.security.login.ip-capacity:20}") int ipCapacity,
+                         @Value("${material.security.login.ip-refill-per-minute:10}") int ipRefillPerMinute,
+                         @Value("${material.security.login.username-capacity:5}") int usernameCapacity,
+                         @Value("${material.security.login.username-refill-per-minute:5}") int usernameRefillPerMinute) {
+        this.ipCapacity = ipCapacity;
+        this.ipRefillPerNano = Math.max(ipRefillPerMinute, 1) / (double) TimeUnit.MINUTES.toNanos(1);
+        this.usernameCapacity = usernameCapacity;
+        this.usernameRefillPerNano = Math.max(usernameRefillPerMinute, 1) / (double) TimeUnit.MINUTES.toNanos(1);
+        this.ipBuckets = newBucketCache(ipCapacity, ipRefillPerMinute);
+        this.usernameBuckets = newBucketCache(usernameCapacity, usernameRefillPerMinute);
+    }
+
+    /**
+     * 为一次登录尝试消耗令牌，IP 受限时不再消耗用户名的令牌
+     * @throws TooManyRequestsException IP 或用户名的令牌已用完
+     */
+    public void acquire(String clientIp, String username) {
+        long now = System.nanoTime();
+        TokenBucket ipBucket = ipBuckets.get(clientIp, key -> new TokenBucket(ipCapacity, ipRefillPerNano, now));
+        long waitNanos = ipBucket.tryConsume(now);
+        if (waitNanos == 0 && username != null) {
+            TokenBucket userBucket = usernameBuckets.get(username.toLowerCase(Locale.ROOT),
+                    key -> new TokenBucket(usernameCapacity, usernameRefillPerNano, now));
+            waitNanos = userBucket.tryConsume(now);
+        }
+        if (waitNanos > 0) {
+            long retryAfterSeconds = TimeUnit.NANOSECONDS.toSeconds(waitNanos - 1) + 1;
+            throw new TooManyRequestsException("登录尝试过于频繁，请稍后再试", retryAfterSeconds);
+        }
+    }
+
+    private static Cache<String, TokenBucket> newBucketCache(int capacity, int refillPerMinute) {
+        long refillMillis = TimeUnit.MINUTES.toMillis(1) * capacity / Math.max(refillPerMinute, 1);
+        return Caffeine.newBuilder()
+                .maximumSize(MAX_TRACKED_KEYS)
+                .expireAfterAccess(Duration.ofMillis(Math.max(refillMillis, 1)))
+                .build();
+    }
+
+    private static class TokenBucket {
+        private final int capacity;
+        private final double refillPerNano;
+        private double tokens;
+        private long refilledAt;
+
+        TokenBucket(int capacity, double refillPerNano, long now) {
+            this.capacity = capacity;
+            this.refillPerNano = refillPerNano;
+            this.tokens = capacity;
+            this.refilledAt = now;
+        }
+
+        /**
+         * @return 0 表示已消耗一个令牌，否则为距下一个令牌可用的纳秒数
+         */
+        synchronized long tryConsume(long now) {
+            if (now > refilledAt) {
+                tokens = Math.min(capacity, tokens + (now - refilledAt) * refillPerNano);
+                refilledAt = now;
+            }
+            if (tokens >= 1) {
+                tokens -= 1;
+                return 0;
+            }
+            return (long) Math.ceil((1 - tokens) / refillPerNano);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.huang.decorationsharingapi.service;
+
+import com.huang.decorationsharingapi.dto.response.MaterialResponse;
+import com.huang.decorationsharingapi.entity.Material;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import javax.persistence.criteria.Path;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * 素材列表的分页游标，对客户端不透明
+ * 记录上一页最后一条素材的排序键和ID，下一页从该位置之后继续读取，不需要 OFFSET 和总数查询
+ */
+public class MaterialCursor {
+
+    private static final String SEPARATOR = "|";
+    private static final String OFFSET_PREFIX = "OFFSET";
+
+    private final MaterialSort sort;
+    private final Comparable<?> key;
+    private final Long id;
+
+    private MaterialCursor(MaterialSort sort, Comparable<?> key, Long id) {
+        this.sort = sort;
+        this.key = key;
+        this.id = id;
+    }
+
+    /**
+     * 以一页的最后一条素材生成下一页的游标
+     */
+    public static MaterialCursor after(MaterialSort sort, MaterialResponse last) {
+        return new MaterialCursor(sort, sort.keyOf(last), last.getId());
+    }
+
+    /**
+     * 解析客户端传回的游标，游标必须与当前排序方式一致
+     */
+    public static MaterialCursor decode(String token, MaterialSort sort) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            // 格式: 排序方式|ID|排序键，排序键放在最后以便包含分隔符
+            String[] parts = raw.split("\\|", 3);
+            if (parts.length != 3 || !sort.name().equals(parts[0])) {
+                throw new IllegalArgumentException("无效的分页游标");
+            }
+            return new MaterialCursor(sort, sort.parseKey(parts[2]), Long.valueOf(parts[1]));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("无效的分页游标");
+        }
+    }
+
+    /**
+     * 相关度排序的结果没有可比较的排序键，游标只记录已读取的结果数
+     */
+    public static String encodeOffset(int offset) {
+        String raw = OFFSET_PREFIX + SEPARATOR + offset;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static int decodeOffset(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|", 2);
+            int offset = Integer.parseInt(parts[1]);
+            if (!OFFSET_PREFIX.equals(parts[0]) || offset < 0 || offset > MaterialSearchIndex.MAX_RESULT_WINDOW) {
+                throw new IllegalArgumentException("无效的分页游标");
+            }
+            return offset;
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("无效的分页游标");
+        }
+    }
+
+    public String encode() {
+        String raw = sort.name() + SEPARATOR + id + SEPARATOR + key;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 游标位置之后的查询条件: (key, id) 按排序方向严格在游标之后
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public Specification<Material> toSpecification() {
+        return (root, query, cb) -> {
+            Path keyPath = root.get(sort.getProperty());
+            Path<Long> idPath = root.get("id");
+            Comparable value = key;
+
+            if (sort.getDirection() == Sort.Direction.DESC) {
+                return cb.or(
+                        cb.lessThan(keyPath, value),
+                        cb.and(cb.equal(keyPath, value), cb.lessThan(idPath, id)));
+            }
+            return cb.or(
+                    cb.greaterThan(keyPath, value),
+                    cb.and(cb.equal(keyPath, value), cb.greaterThan(idPath, id)));
+        };
+    }
+}
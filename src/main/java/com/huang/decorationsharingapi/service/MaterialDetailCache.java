@@ -0,0 +1,88 @@
+package com.huang.decorationsharingapi.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.huang.decorationsharingapi.dto.response.CacheStatsResponse;
+import com.huang.decorationsharingapi.dto.response.MaterialDetailResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * 素材详情缓存
+ * 按素材ID缓存与当前用户无关的详情内容，条目数和存活时间都有上限。
+ * 素材审核、删除以及上传者资料修改时在事务提交后失效对应条目。
+ * 浏览量和收藏数写入数据库后同样失效对应条目，而不是把增量累加到已缓存的条目上：
+ * 写入提交后、累加前加载的条目已包含该增量，再累加会重复计数。
+ */
+@Service
+public class MaterialDetailCache {
+
+    private final Cache<Long, MaterialDetailResponse> cache;
+
+    public MaterialDetailCache(@Value("${material.detail-cache.max-size:10000}") long maxSize,
+                               @Value("${material.detail-cache.ttl:600}") long ttlSeconds) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * 获取素材详情，未缓存时通过 loader 加载
+     * @return 缓存条目的副本，调用方可以修改浏览量和收藏状态
+     */
+    public MaterialDetailResponse get(Long materialId, Function<Long, MaterialDetailResponse> loader) {
+        return cache.get(materialId, loader).toBuilder().build();
+    }
+
+    /**
+     * 获取已缓存的详情，未缓存时不加载
+     * @return 缓存条目的副本，未缓存时返回 null
+     */
+    public MaterialDetailResponse getIfPresent(Long materialId) {
+        MaterialDetailResponse detail = cache.getIfPresent(materialId);
+        return detail == null ? null : detail.toBuilder().build();
+    }
+
+    public void invalidateAll(Collection<Long> materialIds) {
+        cache.invalidateAll(materialIds);
+    }
+
+    public void invalidateAfterCommit(Long materialId) {
+        AfterCommit.run(() -> cache.invalidate(materialId));
+    }
+
+    /**
+     * 上传者的用户名、头像或简介变化后，失效其全部素材的详情
+     */
+    public void invalidateUploaderAfterCommit(Long userId) {
+        AfterCommit.run(() -> cache.asMap().values().removeIf(detail ->
+                detail.getUploader() != null && Objects.equals(detail.getUploader().getId(), userId)));
+    }
+
+    /**
+     * 分类名称变化后，失效该分类下全部素材的详情
+     */
+    public void invalidateCategoryAfterCommit(Long categoryId) {
+        AfterCommit.run(() -> cache.asMap().values().removeIf(detail ->
+                Objects.equals(detail.getCategoryId(), categoryId)));
+    }
+
+    public CacheStatsResponse getStats() {
+        CacheStats stats = cache.stats();
+        return CacheStatsResponse.builder()
+                .size(cache.estimatedSize())
+                .hitCount(stats.hitCount())
+                .missCount(stats.missCount())
+                .hitRate(stats.hitRate())
+                .evictionCount(stats.evictionCount())
+                .build();
+    }
+}
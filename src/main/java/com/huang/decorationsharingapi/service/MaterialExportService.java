@@ -0,0 +1,241 @@
+package com.huang.decorationsharingapi.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.huang.decorationsharingapi.entity.Material;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 素材批量导出
+ * 使用只进游标逐行读取（MySQL 驱动的流式结果集），每行读出后立即写入输出流，
+ * 导出过程中内存占用与数据量无关。
+ */
+@Service
+@RequiredArgsConstructor
+public class MaterialExportService {
+
+    private static final String SELECT_SQL = "SELECT m.id, m.title, m.description, m.image_url, m.thumb_url, " +
+            "m.category_id, c.name AS category_name, u.username, m.views, m.favorites, m.tags, m.license, " +
+            "m.status, m.reject_reason, m.created_at " +
+            "FROM materials m JOIN categories c ON c.id = m.category_id JOIN users u ON u.id = m.user_id";
+
+    private static final String[] COLUMNS = {"id", "title", "description", "imageUrl", "thumbUrl", "categoryId",
+            "categoryName", "uploaderName", "views", "favorites", "tags", "license", "status", "rejectReason",
+            "createdAt"};
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    public enum Format {
+        NDJSON("application/x-ndjson", "ndjson"),
+        CSV("text/csv;charset=UTF-8", "csv");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public static Format of(String format) {
+            try {
+                return valueOf(format.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("不支持的导出格式: " + format);
+            }
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    /**
+     * 按与 AdminService.getMaterials 相同的筛选条件导出素材，按创建时间倒序
+     */
+    public void export(Format format, String status, Long categoryId, String keyword, OutputStream out)
+            throws IOException {
+        try {
+            if (format == Format.CSV) {
+                exportCsv(status, categoryId, keyword, out);
+            } else {
+                exportNdjson(status, categoryId, keyword, out);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private void exportNdjson(String status, Long categoryId, String keyword, OutputStream out) throws IOException {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            // 顶层对象之间不插入默认的空格分隔符，每个对象后单独换行
+            generator.setPrettyPrinter(new MinimalPrettyPrinter(""));
+
+            stream(status, categoryId, keyword, rs -> {
+                try {
+                    generator.writeStartObject();
+                    generator.writeNumberField("id", rs.getLong("id"));
+                    generator.writeStringField("title", rs.getString("title"));
+                    generator.writeStringField("description", rs.getString("description"));
+                    generator.writeStringField("imageUrl", rs.getString("image_url"));
+                    generator.writeStringField("thumbUrl", rs.getString("thumb_url"));
+                    generator.writeNumberField("categoryId", rs.getLong("category_id"));
+                    generator.writeStringField("categoryName", rs.getString("category_name"));
+                    generator.writeStringField("uploaderName", rs.getString("username"));
+                    generator.writeNumberField("views", rs.getInt("views"));
+                    generator.writeNumberField("favorites", rs.getInt("favorites"));
+                    generator.writeFieldName("tags");
+                    // 标签列本身就是 JSON 数组
+                    String tags = rs.getString("tags");
+                    if (tags == null) {
+                        generator.writeNull();
+                    } else {
+                        generator.writeRawValue(tags);
+                    }
+                    generator.writeStringField("license", rs.getString("license"));
+                    generator.writeStringField("status", rs.getString("status"));
+                    generator.writeStringField("rejectReason", rs.getString("reject_reason"));
+                    generator.writeStringField("createdAt", formatTimestamp(rs.getTimestamp("created_at")));
+                    generator.writeEndObject();
+                    generator.writeRaw('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+    }
+
+    private void exportCsv(String status, Long categoryId, String keyword, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        // BOM 让 Excel 按 UTF-8 识别中文
+        writer.write('\uFEFF');
+        writeCsvLine(writer, COLUMNS);
+
+        String[] values = new String[COLUMNS.length];
+        stream(status, categoryId, keyword, rs -> {
+            values[0] = rs.getString("id");
+            values[1] = rs.getString("title");
+            values[2] = rs.getString("description");
+            values[3] = rs.getString("image_url");
+            values[4] = rs.getString("thumb_url");
+            values[5] = rs.getString("category_id");
+            values[6] = rs.getString("category_name");
+            values[7] = rs.getString("username");
+            values[8] = rs.getString("views");
+            values[9] = rs.getString("favorites");
+            values[10] = rs.getString("tags");
+            values[11] = rs.getString("license");
+            values[12] = rs.getString("status");
+            values[13] = rs.getString("reject_reason");
+            values[14] = formatTimestamp(rs.getTimestamp("created_at"));
+            try {
+                writeCsvLine(writer, values);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        writer.flush();
+    }
+
+    private void stream(String status, Long categoryId, String keyword, RowCallbackHandler handler) {
+        StringBuilder sql = new StringBuilder(SELECT_SQL);
+        List<Object> args = new ArrayList<>();
+        List<String> conditions = new ArrayList<>();
+
+        // 状态筛选
+        if (status != null && !status.isEmpty()) {
+            try {
+                args.add(Material.Status.valueOf(status.toUpperCase()).name());
+                conditions.add("m.status = ?");
+            } catch (IllegalArgumentException e) {
+                // 忽略无效的状态值
+            }
+        }
+
+        if (categoryId != null) {
+            conditions.add("m.category_id = ?");
+            args.add(categoryId);
+        }
+
+        if (keyword != null && !keyword.isEmpty()) {
+            String likePattern = "%" + keyword.toLowerCase() + "%";
+            conditions.add("(LOWER(m.title) LIKE ? OR LOWER(m.description) LIKE ? OR LOWER(u.username) LIKE ?)");
+            args.add(likePattern);
+            args.add(likePattern);
+            args.add(likePattern);
+        }
+
+        if (!conditions.isEmpty()) {
+            sql.append(" WHERE ").append(String.join(" AND ", conditions));
+        }
+        sql.append(" ORDER BY m.created_at DESC, m.id DESC");
+
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(sql.toString(),
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            // MySQL 驱动在 fetchSize 为 Integer.MIN_VALUE 时逐行读取结果，不会把结果集整个加载到内存
+            ps.setFetchSize(Integer.MIN_VALUE);
+            for (int i = 0; i < args.size(); i++) {
+                ps.setObject(i + 1, args.get(i));
+            }
+            return ps;
+        }, handler);
+    }
+
+    static void writeCsvLine(Writer writer, String[] values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writeCsvValue(writer, values[i]);
+        }
+        writer.write("\r\n");
+    }
+
+    // 标题、描述和用户名由用户填写，以 = + - @ 或制表符、回车开头的值在 Excel 中会被当作公式执行，
+    // 这类值前加单引号按文本显示
+    private static void writeCsvValue(Writer writer, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        boolean formula = !value.isEmpty() && "=+-@\t\r".indexOf(value.charAt(0)) >= 0;
+        if (!formula && value.indexOf(',') < 0 && value.indexOf('"') < 0
+                && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        if (formula) {
+            writer.write('\'');
+        }
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+    private static String formatTimestamp(Timestamp timestamp) {
+        return timestamp == null ? null : timestamp.toLocalDateTime().toString();
+    }
+}
@@ -0,0 +1,331 @@
+package com.huang.decorationsharingapi.service;
+
+import com.huang.decorationsharingapi.entity.Material;
+import com.huang.decorationsharingapi.repository.MaterialRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 已审核素材的内存倒排索引
+ * 索引标题、标签和描述，启动时全量构建，之后随上传、审核和删除增量维护。
+ * 查询要求包含全部查询词项，按 BM25 相关度排序，标题和标签的词项权重更高。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class MaterialSearchIndex {
+
+    // 按相关度最多可以翻阅的结果数，超出的分页请求返回 400，避免按偏移量分配过大的排序堆
+    public static final int MAX_RESULT_WINDOW = 1000;
+
+    private static final int LOAD_BATCH_SIZE = 500;
+    private static final int TITLE_WEIGHT = 3;
+    private static final int TAG_WEIGHT = 2;
+    private static final int DESCRIPTION_WEIGHT = 1;
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private final MaterialRepository materialRepository;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Set<Long>> postings = new HashMap<>();
+    private final Map<Long, IndexedDocument> documents = new HashMap<>();
+    private long totalLength;
+    private volatile boolean ready;
+
+    /**
+     * 应用启动完成后从数据库全量构建索引，构建期间搜索回退到数据库查询
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        Long afterId = 0L;
+        int count = 0;
+        while (true) {
+            List<Object[]> rows = materialRepository.findSearchDocuments(
+                    Material.Status.APPROVED, afterId, PageRequest.of(0, LOAD_BATCH_SIZE));
+            if (rows.isEmpty()) {
+                break;
+            }
+            for (Object[] row : rows) {
+                @SuppressWarnings("unchecked")
+                List<String> tags = (List<String>) row[3];
+                put((Long) row[0], (String) row[1], (String) row[2], tags, (Long) row[4], (LocalDateTime) row[5]);
+                afterId = (Long) row[0];
+            }
+            count += rows.size();
+        }
+        ready = true;
+        log.info("素材搜索索引构建完成: {} 个素材, 耗时 {} ms", count, System.currentTimeMillis() - start);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * 按素材当前状态更新索引：已审核的加入索引，其他状态从索引中移除
+     */
+    public void index(Material material) {
+        if (material.getStatus() == Material.Status.APPROVED) {
+            put(material.getId(), material.getTitle(), material.getDescription(), material.getTags(),
+                    material.getCategory() != null ? material.getCategory().getId() : null,
+                    material.getCreatedAt());
+        } else {
+            remove(material.getId());
+        }
+    }
+
+    /**
+     * 按素材当前状态批量更新索引，从数据库重新读取仍为已审核状态的素材
+     */
+    public void index(Collection<Long> materialIds) {
+        Set<Long> removed = new HashSet<>(materialIds);
+        List<Long> ids = new ArrayList<>(materialIds);
+        for (int from = 0; from < ids.size(); from += LOAD_BATCH_SIZE) {
+            List<Long> batch = ids.subList(from, Math.min(from + LOAD_BATCH_SIZE, ids.size()));
+            for (Object[] row : materialRepository.findSearchDocuments(Material.Status.APPROVED, batch)) {
+                @SuppressWarnings("unchecked")
+                List<String> tags = (List<String>) row[3];
+                put((Long) row[0], (String) row[1], (String) row[2], tags, (Long) row[4], (LocalDateTime) row[5]);
+                removed.remove((Long) row[0]);
+            }
+        }
+
+        lock.writeLock().lock();
+        try {
+            removed.forEach(this::removeDocument);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 在当前事务提交后更新索引，事务回滚时索引保持不变
+     */
+    public void indexAfterCommit(Material material) {
+        AfterCommit.run(() -> index(material));
+    }
+
+    public void removeAfterCommit(Long materialId) {
+        AfterCommit.run(() -> remove(materialId));
+    }
+
+    /**
+     * 索引中只有已审核的素材
+     */
+    public boolean contains(Long materialId) {
+        lock.readLock().lock();
+        try {
+            return documents.containsKey(materialId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void remove(Long materialId) {
+        lock.writeLock().lock();
+        try {
+            removeDocument(materialId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 搜索素材
+     * @param keyword 关键词
+     * @param categoryId 分类ID，为空时不过滤
+     * @param offset 跳过的结果数
+     * @param limit 返回的最大结果数
+     * @return 按相关度排序的素材ID和命中总数
+     * @throws IllegalArgumentException offset + limit 超过 MAX_RESULT_WINDOW
+     */
+    public SearchResult search(String keyword, Long categoryId, long offset, int limit) {
+        if (offset < 0 || limit < 0 || offset + limit > MAX_RESULT_WINDOW) {
+            throw new IllegalArgumentException("搜索结果最多可查看前 " + MAX_RESULT_WINDOW + " 条");
+        }
+        List<String> queryTerms = new ArrayList<>(new LinkedHashSet<>(SearchTokenizer.tokenizeQuery(keyword)));
+        if (queryTerms.isEmpty()) {
+            return new SearchResult(Collections.emptyList(), 0);
+        }
+
+        lock.readLock().lock();
+        try {
+            List<Set<Long>> termPostings = new ArrayList<>(queryTerms.size());
+            for (String term : queryTerms) {
+                Set<Long> docIds = postings.get(term);
+                if (docIds == null) {
+                    return new SearchResult(Collections.emptyList(), 0);
+                }
+                termPostings.add(docIds);
+            }
+
+            // 从最短的倒排表开始求交集
+            Set<Long> smallest = Collections.min(termPostings, Comparator.comparingInt(Set::size));
+            double averageLength = documents.isEmpty() ? 1 : (double) totalLength / documents.size();
+            int keep = (int) offset + limit;
+            PriorityQueue<ScoredDocument> top = new PriorityQueue<>(Math.max(keep, 1), RANKING.reversed());
+            int total = 0;
+
+            for (Long docId : smallest) {
+                IndexedDocument document = documents.get(docId);
+                if (categoryId != null && !categoryId.equals(document.categoryId)) {
+                    continue;
+                }
+
+                double score = 0;
+                boolean matched = true;
+                for (int t = 0; t < queryTerms.size(); t++) {
+                    Set<Long> docIds = termPostings.get(t);
+                    if (docIds != smallest && !docIds.contains(docId)) {
+                        matched = false;
+                        break;
+                    }
+                    score += bm25(document.termFrequencies.get(queryTerms.get(t)), docIds.size(),
+                            document.length, averageLength);
+                }
+                if (!matched) {
+                    continue;
+                }
+
+                total++;
+                if (keep > 0) {
+                    top.offer(new ScoredDocument(docId, score, document.createdAt));
+                    if (top.size() > keep) {
+                        top.poll();
+                    }
+                }
+            }
+
+            List<ScoredDocument> ranked = new ArrayList<>(top);
+            ranked.sort(RANKING);
+            List<Long> ids = new ArrayList<>();
+            for (int i = (int) offset; i < ranked.size(); i++) {
+                ids.add(ranked.get(i).id);
+            }
+            return new SearchResult(ids, total);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private double bm25(int termFrequency, int documentFrequency, int documentLength, double averageLength) {
+        double idf = Math.log(1 + (documents.size() - documentFrequency + 0.5) / (documentFrequency + 0.5));
+        return idf * termFrequency * (K1 + 1)
+                / (termFrequency + K1 * (1 - B + B * documentLength / averageLength));
+    }
+
+    private void put(Long id, String title, String description, List<String> tags,
+                     Long categoryId, LocalDateTime createdAt) {
+        Map<String, Integer> frequencies = new HashMap<>();
+        addTerms(frequencies, title, TITLE_WEIGHT);
+        if (tags != null) {
+            for (String tag : tags) {
+                addTerms(frequencies, tag, TAG_WEIGHT);
+            }
+        }
+        addTerms(frequencies, description, DESCRIPTION_WEIGHT);
+
+        int length = 0;
+        for (int frequency : frequencies.values()) {
+            length += frequency;
+        }
+        IndexedDocument document = new IndexedDocument(categoryId, createdAt, frequencies, length);
+
+        lock.writeLock().lock();
+        try {
+            removeDocument(id);
+            documents.put(id, document);
+            totalLength += length;
+            for (String term : frequencies.keySet()) {
+                postings.computeIfAbsent(term, key -> new HashSet<>()).add(id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void addTerms(Map<String, Integer> frequencies, String text, int weight) {
+        for (String term : SearchTokenizer.tokenize(text)) {
+            frequencies.merge(term, weight, Integer::sum);
+        }
+    }
+
+    // 调用方需持有写锁
+    private void removeDocument(Long id) {
+        IndexedDocument document = documents.remove(id);
+        if (document == null) {
+            return;
+        }
+        totalLength -= document.length;
+        for (String term : document.termFrequencies.keySet()) {
+            Set<Long> docIds = postings.get(term);
+            if (docIds != null) {
+                docIds.remove(id);
+                if (docIds.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+        }
+    }
+
+    // 相关度高的在前，相同时较新的在前
+    private static final Comparator<ScoredDocument> RANKING = Comparator
+            .comparingDouble((ScoredDocument d) -> d.score).reversed()
+            .thenComparing(d -> d.createdAt, Comparator.nullsLast(Comparator.reverseOrder()))
+            .thenComparing(d -> d.id, Comparator.reverseOrder());
+
+    private static class IndexedDocument {
+        private final Long categoryId;
+        private final LocalDateTime createdAt;
+        private final Map<String, Integer> termFrequencies;
+        private final int length;
+
+        IndexedDocument(Long categoryId, LocalDateTime createdAt, Map<String, Integer> termFrequencies, int length) {
+            this.categoryId = categoryId;
+            this.createdAt = createdAt;
+            this.termFrequencies = termFrequencies;
+            this.length = length;
+        }
+    }
+
+    private static class ScoredDocument {
+        private final Long id;
+        private final double score;
+        private final LocalDateTime createdAt;
+
+        ScoredDocument(Long id, double score, LocalDateTime createdAt) {
+            this.id = id;
+            this.score = score;
+            this.createdAt = createdAt;
+        }
+    }
+
+    public static class SearchResult {
+        private final List<Long> ids;
+        private final long total;
+
+        public SearchResult(List<Long> ids, long total) {
+            this.ids = ids;
+            this.total = total;
+        }
+
+        public List<Long> getIds() {
+            return ids;
+        }
+
+        public long getTotal() {
+            return total;
+        }
+    }
+}
@@ -1,6 +1,9 @@
 package com.huang.decorationsharingapi.service;
 
 import com.huang.decorationsharingapi.dto.request.MaterialRequest;
+import com.huang.decorationsharingapi.dto.response.MaterialDetailResponse;
+import com.huang.decorationsharingapi.dto.response.MaterialResponse;
+import com.huang.decorationsharingapi.dto.response.PagedResponse;
 import com.huang.decorationsharingapi.entity.Category;
 import com.huang.decorationsharingapi.entity.Favorite;
 import com.huang.decorationsharingapi.entity.Material;
@@ -11,7 +14,10 @@ import com.huang.decorationsharingapi.repository.FavoriteRepository;
 import com.huang.decorationsharingapi.repository.MaterialRepository;
 import com.huang.decorationsharingapi.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.ConcurrencyFailureException;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
@@ -21,24 +27,45 @@ import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
 import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Subquery;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
-import java.util.Optional;
-
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.IntSupplier;
+import java.util.stream.Collectors;
+
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class MaterialService {
 
+    // 收藏记录增删遇到死锁时的最大尝试次数
+    private static final int FAVORITE_WRITE_ATTEMPTS = 3;
+
     private final MaterialRepository materialRepository;
     private final CategoryRepository categoryRepository;
     private final UserRepository userRepository;
     private final FavoriteRepository favoriteRepository;
-    private final FileStorageService fileStorageService;
-
-    public Page<Material> getMaterials(int page, int size, Long categoryId, String sort,
-                                       String status, String keyword, String username) {
-        Sort sortOrder = createSortOrder(sort);
-        Pageable pageable = PageRequest.of(page, size, sortOrder);
+    private final FavoriteWriter favoriteWriter;
+    private final FavoriteCountBuffer favoriteCountBuffer;
+    private final StoredFileRegistry storedFiles;
+    private final MaterialSearchIndex searchIndex;
+    private final ViewCountBuffer viewCountBuffer;
+    private final MaterialDetailCache materialDetailCache;
+    private final CatalogVersions catalogVersions;
+    private final TrendingScoreUpdater trendingScoreUpdater;
+    private final AdminStatsAggregate adminStats;
+    private final RenditionWorker renditionWorker;
+
+    public Page<MaterialResponse> getMaterials(int page, int size, Long categoryId, String sort,
+                                               String status, String keyword, String username) {
+        Pageable pageable = PageRequest.of(page, size, MaterialSort.of(sort).toSort());
 
         // 如果status为空，默认为APPROVED
         if (status == null || status.isEmpty()) {
@@ -46,28 +73,154 @@ public class MaterialService {
         }
 
         Specification<Material> spec = createMaterialSpecification(categoryId, status, keyword, username);
-        return materialRepository.findAll(spec, pageable);
+        Page<MaterialResponse> materials = materialRepository.findCards(spec, pageable, false);
+        applyFavoriteState(materials.getContent(), username);
+        return materials;
     }
 
-    public Material getMaterialById(Long id, String username) {
-        Material material = materialRepository.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("Material", "id", id));
+    /**
+     * 游标分页方式获取素材列表，不执行总数查询
+     */
+    public PagedResponse<MaterialResponse> getMaterialsByCursor(String cursor, int size, Long categoryId, String sort,
+                                                                String status, String keyword, String username) {
+        if (status == null || status.isEmpty()) {
+            status = "APPROVED";
+        }
+
+        Specification<Material> spec = createMaterialSpecification(categoryId, status, keyword, username);
+        PagedResponse<MaterialResponse> materials = findCardsByCursor(spec, MaterialSort.of(sort), cursor, size);
+        applyFavoriteState(materials.getItems(), username);
+        return materials;
+    }
+
+    /**
+     * 记录一次浏览，用于详情未变化、直接返回 304 的请求
+     */
+    public void recordView(Long id) {
+        viewCountBuffer.increment(id);
+    }
+
+    /**
+     * 不读取数据库确认素材对当前用户可见：详情已缓存时按其审核状态判断，未缓存的已审核素材由搜索索引确认
+     * @return 无法确认时返回 false，调用方需加载详情
+     */
+    public boolean isKnownVisible(Long id, String username) {
+        MaterialDetailResponse cached = materialDetailCache.getIfPresent(id);
+        if (cached != null) {
+            return isVisible(cached, username);
+        }
+        return searchIndex.contains(id);
+    }
+
+    /**
+     * 获取素材详情并记录一次浏览
+     * 浏览量先计入内存缓冲，返回的浏览量和收藏数包含尚未写回数据库的部分
+     * @throws ResourceNotFoundException 素材不存在或对当前用户不可见，此时不计入浏览
+     */
+    public MaterialDetailResponse getMaterialDetail(Long id, String username) {
+        MaterialDetailResponse detail = materialDetailCache.get(id, this::loadMaterialDetail);
+        if (!isVisible(detail, username)) {
+            throw new ResourceNotFoundException("Material", "id", id);
+        }
 
         // 增加浏览量
-        material.setViews(material.getViews() + 1);
-        return materialRepository.save(material);
+        viewCountBuffer.increment(id);
+        detail.setViews((int) (detail.getViews() + viewCountBuffer.getPending(id)));
+        detail.setFavorites((int) (detail.getFavorites() + favoriteCountBuffer.getPending(id)));
+        detail.setFavorite(checkIsFavorite(id, username));
+        return detail;
     }
 
-    public Page<Material> searchMaterials(String keyword, int page, int size, Long categoryId, String status) {
-        Pageable pageable = PageRequest.of(page, size, Sort.by(Sort.Direction.DESC, "createdAt"));
+    // 未登录用户只能查看已审核的素材
+    private static boolean isVisible(MaterialDetailResponse detail, String username) {
+        return username != null || Material.Status.APPROVED.name().equals(detail.getStatus());
+    }
+
+    private MaterialDetailResponse loadMaterialDetail(Long id) {
+        Material material = materialRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Material", "id", id));
+        return convertToMaterialDetailResponse(material);
+    }
+
+    public Page<MaterialResponse> searchMaterials(String keyword, int page, int size, Long categoryId,
+                                                  String status, String username) {
+        Pageable pageable = PageRequest.of(page, size, MaterialSort.LATEST.toSort());
 
         // 如果status为空，默认为APPROVED
         if (status == null || status.isEmpty()) {
             status = "APPROVED";
         }
 
+        // 已审核素材优先使用内存索引按相关度搜索
+        if (useSearchIndex(keyword, status)) {
+            MaterialSearchIndex.SearchResult result = searchIndex.search(
+                    keyword, categoryId, pageable.getOffset(), size);
+            List<MaterialResponse> content = findCardsByIds(result.getIds());
+            applyFavoriteState(content, username);
+            return new PageImpl<>(content, pageable, result.getTotal());
+        }
+
         Specification<Material> spec = createMaterialSpecification(categoryId, status, keyword, null);
-        return materialRepository.findAll(spec, pageable);
+        Page<MaterialResponse> materials = materialRepository.findCards(spec, pageable, false);
+        applyFavoriteState(materials.getContent(), username);
+        return materials;
+    }
+
+    /**
+     * 游标分页方式搜索素材
+     * 使用索引时按相关度排序，游标记录结果中的位置；否则按最新排序
+     */
+    public PagedResponse<MaterialResponse> searchMaterialsByCursor(String keyword, String cursor, int size, Long categoryId,
+                                                                   String status, String username) {
+        if (status == null || status.isEmpty()) {
+            status = "APPROVED";
+        }
+
+        if (useSearchIndex(keyword, status)) {
+            if (size < 1) {
+                throw new IllegalArgumentException("每页数量必须大于0");
+            }
+            int offset = cursor == null || cursor.isEmpty() ? 0 : MaterialCursor.decodeOffset(cursor);
+            MaterialSearchIndex.SearchResult result = searchIndex.search(keyword, categoryId, offset, size);
+            List<MaterialResponse> content = findCardsByIds(result.getIds());
+            applyFavoriteState(content, username);
+            long next = (long) offset + size;
+            String nextCursor = next < Math.min(result.getTotal(), MaterialSearchIndex.MAX_RESULT_WINDOW)
+                    ? MaterialCursor.encodeOffset((int) next) : null;
+            return PagedResponse.ofCursor(content, size, nextCursor);
+        }
+
+        Specification<Material> spec = createMaterialSpecification(categoryId, status, keyword, null);
+        PagedResponse<MaterialResponse> materials = findCardsByCursor(spec, MaterialSort.LATEST, cursor, size);
+        applyFavoriteState(materials.getItems(), username);
+        return materials;
+    }
+
+    private boolean useSearchIndex(String keyword, String status) {
+        return searchIndex.isReady()
+                && "APPROVED".equalsIgnoreCase(status)
+                && !SearchTokenizer.tokenizeQuery(keyword).isEmpty();
+    }
+
+    /**
+     * 按给定ID顺序查询素材卡片，索引中已过期的素材会被忽略
+     */
+    private List<MaterialResponse> findCardsByIds(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        Specification<Material> spec = (root, query, cb) -> cb.and(
+                root.get("id").in(ids),
+                cb.equal(root.get("status"), Material.Status.APPROVED));
+        Map<Long, MaterialResponse> cards = materialRepository.findCardSlice(spec, Sort.unsorted(), ids.size(), false)
+                .stream()
+                .collect(Collectors.toMap(MaterialResponse::getId, Function.identity()));
+
+        return ids.stream()
+                .map(cards::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
     }
 
     @Transactional
@@ -78,15 +231,17 @@ public class MaterialService {
         Category category = categoryRepository.findById(materialRequest.getCategoryId())
                 .orElseThrow(() -> new ResourceNotFoundException("Category", "id", materialRequest.getCategoryId()));
 
-        // 保存图片文件
-        String imageUrl = fileStorageService.storeFile(file);
-        String thumbUrl = fileStorageService.createThumbnail(file);
+        // 按内容保存原图；相同内容已生成过缩略图时直接复用，否则在事务提交后由 RenditionWorker 生成
+        String imageUrl = storedFiles.store(file);
+        FileStorageService.StoredImage existing = storedFiles.findRenditions(imageUrl);
 
         Material material = Material.builder()
                 .title(materialRequest.getTitle())
                 .description(materialRequest.getDescription())
                 .imageUrl(imageUrl)
-                .thumbUrl(thumbUrl)
+                .thumbUrl(existing != null ? existing.getThumbFileName() : imageUrl)
+                .renditions(existing != null ? existing.getRenditions() : null)
+                .renditionStatus(existing != null ? Material.RenditionStatus.READY : Material.RenditionStatus.PENDING)
                 .category(category)
                 .user(user)
                 .views(0)
@@ -96,37 +251,88 @@ public class MaterialService {
                 .status(Material.Status.PENDING)
                 .build();
 
-        return materialRepository.save(material);
+        // 先对用户行加排他锁再插入素材，插入时外键检查对用户行加的共享锁不会与同一用户的并发上传互相死锁
+        userRepository.addUploadCount(user.getId(), 1);
+        Material savedMaterial = materialRepository.save(material);
+        if (existing == null) {
+            renditionWorker.enqueue(savedMaterial.getId(), imageUrl);
+        }
+        searchIndex.indexAfterCommit(savedMaterial);
+        adminStats.materialCreatedAfterCommit(savedMaterial.getCreatedAt());
+        catalogVersions.materialsChangedAfterCommit();
+        AfterCommit.run(() -> trendingScoreUpdater.markDirty(savedMaterial.getId()));
+        return savedMaterial;
     }
 
-    @Transactional
+    /**
+     * 切换收藏状态：先尝试删除收藏记录，没有可删除的记录时再添加
+     * <p>
+     * 收藏记录的增删和用户收藏数的增减由 FavoriteWriter 在同一个短事务中完成，素材收藏数在提交后计入写回缓冲
+     * @return 操作后是否处于收藏状态
+     */
     public boolean toggleFavorite(Long materialId, String username) {
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new ResourceNotFoundException("User", "username", username));
+        Long userId = findUserId(username);
 
-        Material material = materialRepository.findById(materialId)
-                .orElseThrow(() -> new ResourceNotFoundException("Material", "id", materialId));
+        if (deleteFavorite(userId, username, materialId)) {
+            return false;
+        }
+        insertFavorite(userId, username, materialId);
+        return true;
+    }
 
-        Optional<Favorite> favoriteOpt = favoriteRepository.findByUserAndMaterial(user, material);
+    /**
+     * 收藏素材，重复调用结果相同
+     */
+    public void addFavorite(Long materialId, String username) {
+        Long userId = findUserId(username);
+        insertFavorite(userId, username, materialId);
+    }
 
-        // 如果已经收藏，则取消收藏
-        if (favoriteOpt.isPresent()) {
-            favoriteRepository.delete(favoriteOpt.get());
-            material.setFavorites(material.getFavorites() - 1);
-            materialRepository.save(material);
-            return false;
+    /**
+     * 取消收藏素材，重复调用结果相同
+     */
+    public void removeFavorite(Long materialId, String username) {
+        Long userId = findUserId(username);
+        deleteFavorite(userId, username, materialId);
+    }
+
+    // 只有真正插入了收藏记录时才增加收藏数，并发的重复收藏由唯一键拦截
+    private void insertFavorite(Long userId, String username, Long materialId) {
+        if (retryOnDeadlock(() -> favoriteWriter.insert(userId, materialId)) > 0) {
+            favoriteCountBuffer.add(materialId, 1);
+            catalogVersions.favoritesChanged(username);
         }
-        // 否则添加收藏
-        else {
-            Favorite favorite = Favorite.builder()
-                    .user(user)
-                    .material(material)
-                    .build();
-            favoriteRepository.save(favorite);
-            material.setFavorites(material.getFavorites() + 1);
-            materialRepository.save(material);
+    }
+
+    private boolean deleteFavorite(Long userId, String username, Long materialId) {
+        if (retryOnDeadlock(() -> favoriteWriter.delete(userId, materialId)) > 0) {
+            favoriteCountBuffer.add(materialId, -1);
+            catalogVersions.favoritesChanged(username);
             return true;
         }
+        return false;
+    }
+
+    /**
+     * 同一收藏键上的插入和删除交替进行时，InnoDB 可能判定死锁并回滚其中一个事务。
+     * 被回滚的事务中收藏记录和收藏数都没有生效，整体重试不会重复计数
+     */
+    private int retryOnDeadlock(IntSupplier statement) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return statement.getAsInt();
+            } catch (ConcurrencyFailureException e) {
+                if (attempt >= FAVORITE_WRITE_ATTEMPTS) {
+                    throw e;
+                }
+                log.debug("收藏写入冲突，重试第{}次: {}", attempt, e.getMessage());
+            }
+        }
+    }
+
+    private Long findUserId(String username) {
+        return userRepository.findIdByUsername(username)
+                .orElseThrow(() -> new ResourceNotFoundException("User", "username", username));
     }
 
     /**
@@ -136,25 +342,45 @@ public class MaterialService {
      * @return 是否收藏
      */
     public boolean checkIsFavorite(Long materialId, String username) {
-        try {
-            User user = userRepository.findByUsername(username)
-                    .orElseThrow(() -> new ResourceNotFoundException("User", "username", username));
+        if (username == null) {
+            return false;
+        }
+        return favoriteRepository.existsByUserUsernameAndMaterialId(username, materialId);
+    }
 
-            Material material = materialRepository.findById(materialId)
-                    .orElseThrow(() -> new ResourceNotFoundException("Material", "id", materialId));
+    /**
+     * 批量检查用户对一页素材的收藏状态，整页只需一次查询
+     * @param materialIds 素材ID集合
+     * @param username 用户名
+     * @return 已收藏的素材ID集合
+     */
+    public Set<Long> getFavoriteMaterialIds(Collection<Long> materialIds, String username) {
+        if (username == null || materialIds.isEmpty()) {
+            return Collections.emptySet();
+        }
+        return favoriteRepository.findFavoriteMaterialIds(username, materialIds);
+    }
 
-            return favoriteRepository.findByUserAndMaterial(user, material).isPresent();
-        } catch (Exception e) {
-            // 处理异常，例如用户或素材不存在
-            return false;
+    /**
+     * 为一页素材卡片设置当前用户的收藏状态
+     */
+    private void applyFavoriteState(List<MaterialResponse> materials, String username) {
+        if (username == null || materials.isEmpty()) {
+            return;
         }
+
+        Set<Long> materialIds = materials.stream()
+                .map(MaterialResponse::getId)
+                .collect(Collectors.toSet());
+        Set<Long> favoriteIds = getFavoriteMaterialIds(materialIds, username);
+        materials.forEach(material -> material.setFavorite(favoriteIds.contains(material.getId())));
     }
 
-    public Page<Material> getUserMaterials(String username, int page, int size, String status, Long categoryId, String keyword) {
+    public Page<MaterialResponse> getUserMaterials(String username, int page, int size, String status, Long categoryId, String keyword) {
         User user = userRepository.findByUsername(username)
                 .orElseThrow(() -> new ResourceNotFoundException("User", "username", username));
 
-        Pageable pageable = PageRequest.of(page, size, Sort.by(Sort.Direction.DESC, "createdAt"));
+        Pageable pageable = PageRequest.of(page, size, MaterialSort.LATEST.toSort());
 
         Specification<Material> spec = (root, query, cb) -> {
             List<Predicate> predicates = new ArrayList<>();
@@ -189,35 +415,115 @@ public class MaterialService {
             return cb.and(predicates.toArray(new Predicate[0]));
         };
 
-        return materialRepository.findAll(spec, pageable);
+        return materialRepository.findCards(spec, pageable, false);
     }
 
-    public Page<Material> getUserFavorites(String username, int page, int size, Long categoryId, String keyword) {
+    public Page<MaterialResponse> getUserFavorites(String username, int page, int size, Long categoryId, String keyword) {
         User user = userRepository.findByUsername(username)
                 .orElseThrow(() -> new ResourceNotFoundException("User", "username", username));
 
-        Pageable pageable = PageRequest.of(page, size, Sort.by(Sort.Direction.DESC, "createdAt"));
+        Pageable pageable = PageRequest.of(page, size, MaterialSort.LATEST.toSort());
 
-        return materialRepository.findUserFavorites(user.getId(), categoryId, keyword, pageable);
+        Specification<Material> spec = createFavoriteSpecification(user.getId(), categoryId, keyword);
+        Page<MaterialResponse> materials = materialRepository.findCards(spec, pageable, false);
+        // 收藏列表中的项目一定是收藏的
+        materials.getContent().forEach(material -> material.setFavorite(true));
+        return materials;
     }
 
-    private Sort createSortOrder(String sort) {
-        if (sort == null) {
-            return Sort.by(Sort.Direction.DESC, "createdAt");
+    /**
+     * 游标分页方式获取用户收藏，按素材发布时间倒序
+     */
+    public PagedResponse<MaterialResponse> getUserFavoritesByCursor(String username, String cursor, int size,
+                                                                    Long categoryId, String keyword) {
+        User user = userRepository.findByUsername(username)
+                .orElseThrow(() -> new ResourceNotFoundException("User", "username", username));
+
+        Specification<Material> spec = createFavoriteSpecification(user.getId(), categoryId, keyword);
+        PagedResponse<MaterialResponse> materials = findCardsByCursor(spec, MaterialSort.LATEST, cursor, size);
+        materials.getItems().forEach(material -> material.setFavorite(true));
+        return materials;
+    }
+
+    /**
+     * 按游标读取一页素材卡片，多取一条用于判断是否还有下一页
+     */
+    private PagedResponse<MaterialResponse> findCardsByCursor(Specification<Material> spec, MaterialSort sort,
+                                                              String cursor, int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("每页数量必须大于0");
+        }
+
+        if (cursor != null && !cursor.isEmpty()) {
+            spec = Specification.where(spec).and(MaterialCursor.decode(cursor, sort).toSpecification());
         }
 
-        switch (sort) {
-            case "latest":
-                return Sort.by(Sort.Direction.DESC, "createdAt");
-            case "oldest":
-                return Sort.by(Sort.Direction.ASC, "createdAt");
-            case "popular":
-                return Sort.by(Sort.Direction.DESC, "views");
-            case "name":
-                return Sort.by(Sort.Direction.ASC, "title");
-            default:
-                return Sort.by(Sort.Direction.DESC, "createdAt");
+        List<MaterialResponse> items = materialRepository.findCardSlice(spec, sort.toSort(), size + 1, false);
+        String nextCursor = null;
+        if (items.size() > size) {
+            items = new ArrayList<>(items.subList(0, size));
+            nextCursor = MaterialCursor.after(sort, items.get(size - 1)).encode();
         }
+        return PagedResponse.ofCursor(items, size, nextCursor);
+    }
+
+    private Specification<Material> createFavoriteSpecification(Long userId, Long categoryId, String keyword) {
+        return (root, query, cb) -> {
+            List<Predicate> predicates = new ArrayList<>();
+
+            // 用户收藏的素材
+            Subquery<Long> favorites = query.subquery(Long.class);
+            Root<Favorite> favorite = favorites.from(Favorite.class);
+            favorites.select(favorite.get("material").get("id"))
+                    .where(cb.equal(favorite.get("user").get("id"), userId));
+            predicates.add(root.get("id").in(favorites));
+
+            // 分类筛选
+            if (categoryId != null) {
+                predicates.add(cb.equal(root.get("category").get("id"), categoryId));
+            }
+
+            // 关键词搜索
+            if (keyword != null && !keyword.isEmpty()) {
+                String likePattern = "%" + keyword.toLowerCase() + "%";
+                predicates.add(cb.or(
+                        cb.like(cb.lower(root.get("title")), likePattern),
+                        cb.like(cb.lower(root.get("description")), likePattern)
+                ));
+            }
+
+            return cb.and(predicates.toArray(new Predicate[0]));
+        };
+    }
+
+    private MaterialDetailResponse convertToMaterialDetailResponse(Material material) {
+        return MaterialDetailResponse.builder()
+                .id(material.getId())
+                .title(material.getTitle())
+                .description(material.getDescription())
+                .imageUrl(material.getImageUrl())
+                .thumbUrl(material.getThumbUrl())
+                .renditions(material.getRenditions())
+                .renditionStatus(material.getRenditionStatus() == null ? null : material.getRenditionStatus().name())
+                .categoryId(material.getCategory().getId())
+                .categoryName(material.getCategory().getName())
+                .uploader(convertToUserInfo(material))
+                .views(material.getViews())
+                .favorites(material.getFavorites())
+                .tags(material.getTags())
+                .license(material.getLicense())
+                .status(material.getStatus().name())
+                .createdAt(material.getCreatedAt())
+                .build();
+    }
+
+    private MaterialDetailResponse.UserInfo convertToUserInfo(Material material) {
+        return MaterialDetailResponse.UserInfo.builder()
+                .id(material.getUser().getId())
+                .username(material.getUser().getUsername())
+                .avatar(material.getUser().getAvatar())
+                .bio(material.getUser().getBio())
+                .build();
     }
 
     private Specification<Material> createMaterialSpecification(
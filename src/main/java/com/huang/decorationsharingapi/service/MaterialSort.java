@@ -0,0 +1,67 @@
+package com.huang.decorationsharingapi.service;
+
+import com.huang.decorationsharingapi.dto.response.MaterialResponse;
+import org.springframework.data.domain.Sort;
+
+import java.time.LocalDateTime;
+import java.util.function.Function;
+
+/**
+ * 素材列表支持的排序方式
+ * 每种排序都以素材ID作为次级排序键，保证顺序稳定，游标分页可以据此定位
+ */
+public enum MaterialSort {
+    LATEST("createdAt", Sort.Direction.DESC, MaterialResponse::getCreatedAt, LocalDateTime::parse),
+    OLDEST("createdAt", Sort.Direction.ASC, MaterialResponse::getCreatedAt, LocalDateTime::parse),
+    POPULAR("views", Sort.Direction.DESC, MaterialResponse::getViews, Integer::valueOf),
+    TRENDING("trendingScore", Sort.Direction.DESC, MaterialResponse::getTrendingScore, Double::valueOf),
+    NAME("title", Sort.Direction.ASC, MaterialResponse::getTitle, Function.identity());
+
+    private final String property;
+    private final Sort.Direction direction;
+    private final Function<MaterialResponse, ? extends Comparable<?>> keyExtractor;
+    private final Function<String, ? extends Comparable<?>> keyParser;
+
+    MaterialSort(String property, Sort.Direction direction,
+                 Function<MaterialResponse, ? extends Comparable<?>> keyExtractor,
+                 Function<String, ? extends Comparable<?>> keyParser) {
+        this.property = property;
+        this.direction = direction;
+        this.keyExtractor = keyExtractor;
+        this.keyParser = keyParser;
+    }
+
+    /**
+     * 根据请求参数解析排序方式，未知或为空时按最新排序
+     */
+    public static MaterialSort of(String sort) {
+        if (sort == null || sort.isEmpty()) {
+            return LATEST;
+        }
+        try {
+            return valueOf(sort.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return LATEST;
+        }
+    }
+
+    public Sort toSort() {
+        return Sort.by(direction, property).and(Sort.by(direction, "id"));
+    }
+
+    public String getProperty() {
+        return property;
+    }
+
+    public Sort.Direction getDirection() {
+        return direction;
+    }
+
+    Comparable<?> keyOf(MaterialResponse material) {
+        return keyExtractor.apply(material);
+    }
+
+    Comparable<?> parseKey(String value) {
+        return keyParser.apply(value);
+    }
+}
@@ -0,0 +1,155 @@
+package com.huang.decorationsharingapi.service;
+
+import com.huang.decorationsharingapi.dto.response.MaterialResponse;
+import com.huang.decorationsharingapi.dto.response.ModerationClaimResponse;
+import com.huang.decorationsharingapi.dto.response.ModerationQueueResponse;
+import com.huang.decorationsharingapi.exception.ResourceNotFoundException;
+import com.huang.decorationsharingapi.repository.MaterialRepository;
+import com.huang.decorationsharingapi.repository.UserRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 待审核素材的租约队列
+ * 管理员按需领取若干待审核素材，领取时以 FOR UPDATE SKIP LOCKED 跳过其他管理员正在领取的行，
+ * 不同管理员拿到的素材互不重复。租约到期未处理的素材自动回到队列。
+ */
+@Service
+@RequiredArgsConstructor
+public class ModerationQueueService {
+
+    private static final int MAX_CLAIM_SIZE = 50;
+
+    private static final String SELECT_OWN_SQL = "SELECT id FROM materials " +
+            "WHERE status = 'PENDING' AND claimed_by = :moderatorId AND claim_expires_at > :now " +
+            "ORDER BY created_at, id LIMIT :limit FOR UPDATE";
+
+    private static final String SELECT_AVAILABLE_SQL = "SELECT id FROM materials " +
+            "WHERE status = 'PENDING' AND (claim_expires_at IS NULL OR claim_expires_at <= :now) " +
+            "ORDER BY created_at, id LIMIT :limit FOR UPDATE SKIP LOCKED";
+
+    private static final String CLAIM_SQL = "UPDATE materials SET claimed_by = :moderatorId, " +
+            "claim_expires_at = :expiresAt WHERE id IN (:ids)";
+
+    private static final String RELEASE_SQL = "UPDATE materials SET claimed_by = NULL, claim_expires_at = NULL " +
+            "WHERE claimed_by = :moderatorId AND status = 'PENDING'";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final MaterialRepository materialRepository;
+    private final UserRepository userRepository;
+
+    @Value("${material.moderation.lease-seconds:600}")
+    private long leaseSeconds;
+
+    /**
+     * 领取待审核素材
+     * 先续期自己尚未到期的租约，不足 size 个时再按提交时间从早到晚领取无人持有或租约已过期的素材
+     */
+    @Transactional
+    public ModerationClaimResponse claim(String username, int size) {
+        if (size < 1 || size > MAX_CLAIM_SIZE) {
+            throw new IllegalArgumentException("单次领取数量须在1到" + MAX_CLAIM_SIZE + "之间");
+        }
+        Long moderatorId = findUserId(username);
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime expiresAt = now.plusSeconds(leaseSeconds);
+
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("moderatorId", moderatorId)
+                .addValue("now", now)
+                .addValue("limit", size);
+        List<Long> ids = new ArrayList<>(jdbcTemplate.queryForList(SELECT_OWN_SQL, params, Long.class));
+        if (ids.size() < size) {
+            params.addValue("limit", size - ids.size());
+            ids.addAll(jdbcTemplate.queryForList(SELECT_AVAILABLE_SQL, params, Long.class));
+        }
+        if (ids.isEmpty()) {
+            return new ModerationClaimResponse(Collections.emptyList(), expiresAt);
+        }
+
+        jdbcTemplate.update(CLAIM_SQL, new MapSqlParameterSource()
+                .addValue("moderatorId", moderatorId)
+                .addValue("expiresAt", expiresAt)
+                .addValue("ids", ids));
+        return new ModerationClaimResponse(findCards(ids), expiresAt);
+    }
+
+    /**
+     * 释放租约，未指定素材时释放自己持有的全部租约
+     * @return 释放的素材数
+     */
+    @Transactional
+    public int release(String username, Collection<Long> ids) {
+        MapSqlParameterSource params = new MapSqlParameterSource("moderatorId", findUserId(username));
+        if (ids == null || ids.isEmpty()) {
+            return jdbcTemplate.update(RELEASE_SQL, params);
+        }
+        return jdbcTemplate.update(RELEASE_SQL + " AND id IN (:ids)", params.addValue("ids", ids));
+    }
+
+    /**
+     * 队列深度和等待时长分位数
+     * 分位数通过 (status, created_at, id) 索引按偏移量直接定位，不需要读取整个队列
+     */
+    public ModerationQueueResponse getQueueStats() {
+        LocalDateTime now = LocalDateTime.now();
+        MapSqlParameterSource params = new MapSqlParameterSource("now", now);
+        long depth = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM materials WHERE status = 'PENDING'", params, Long.class);
+        long claimed = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM materials WHERE status = 'PENDING' AND claim_expires_at > :now",
+                params, Long.class);
+
+        return ModerationQueueResponse.builder()
+                .depth(depth)
+                .claimed(claimed)
+                .available(depth - claimed)
+                .maxAgeSeconds(ageAtPercentile(depth, 1.0, now))
+                .p50AgeSeconds(ageAtPercentile(depth, 0.5, now))
+                .p90AgeSeconds(ageAtPercentile(depth, 0.9, now))
+                .p99AgeSeconds(ageAtPercentile(depth, 0.99, now))
+                .build();
+    }
+
+    // 队列按提交时间从早到晚排列，等待时长的 p 分位数对应第 (1 - p) × (depth - 1) 个素材
+    private Long ageAtPercentile(long depth, double percentile, LocalDateTime now) {
+        if (depth == 0) {
+            return null;
+        }
+        long offset = (long) Math.floor((1 - percentile) * (depth - 1));
+        try {
+            LocalDateTime createdAt = jdbcTemplate.queryForObject(
+                    "SELECT created_at FROM materials WHERE status = 'PENDING' " +
+                            "ORDER BY created_at, id LIMIT 1 OFFSET :offset",
+                    new MapSqlParameterSource("offset", offset), LocalDateTime.class);
+            return createdAt == null ? null : Duration.between(createdAt, now).getSeconds();
+        } catch (EmptyResultDataAccessException e) {
+            // 统计期间队列变短
+            return null;
+        }
+    }
+
+    private List<MaterialResponse> findCards(List<Long> ids) {
+        return materialRepository.findCardSlice(
+                (root, query, cb) -> root.get("id").in(ids),
+                Sort.by(Sort.Direction.ASC, "createdAt", "id"), ids.size(), true);
+    }
+
+    private Long findUserId(String username) {
+        return userRepository.findIdByUsername(username)
+                .orElseThrow(() -> new ResourceNotFoundException("User", "username", username));
+    }
+}
@@ -0,0 +1,53 @@
+package com.huang.decorationsharingapi.service;
+
+import com.huang.decorationsharingapi.exception.ServiceBusyException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 密码哈希专用线程池
+ * BCrypt 计算耗时且占满 CPU，登录和注册放在固定大小的线程池中执行，不占用 Tomcat 请求线程。
+ * 排队的任务超过上限时立即拒绝，由调用方返回 503 并提示客户端稍后重试。
+ */
+@Service
+public class PasswordHashingExecutor {
+
+    private final ThreadPoolExecutor executor;
+    private final long retryAfterSeconds;
+
+    public PasswordHashingExecutor(@Value("${material.security.hashing.threads:0}") int threads,
+                                   @Value("${material.security.hashing.queue-capacity:32}") int queueCapacity,
+                                   @Value("${material.security.hashing.retry-after:1}") long retryAfterSeconds) {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("password-hashing-"),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * 提交需要计算密码哈希的任务
+     * @throws ServiceBusyException 排队的任务已满
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> task) {
+        try {
+            return CompletableFuture.supplyAsync(task, executor);
+        } catch (RejectedExecutionException e) {
+            throw new ServiceBusyException("服务繁忙，请稍后再试", retryAfterSeconds);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
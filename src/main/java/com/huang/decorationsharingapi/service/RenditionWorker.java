@@ -0,0 +1,372 @@
+package com.huang.decorationsharingapi.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.huang.decorationsharingapi.dto.response.RenditionQueueResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 素材缩略图的后台生成
+ * 上传时在同一事务中登记 rendition_jobs，提交后立即交给固定大小的线程池；线程池已满或进程重启时，
+ * 任务留在表中由定时轮询重新提交。处理前以租约认领任务，同一任务不会被重复处理，
+ * 失败的任务按指数退避重试，超过次数后将素材标记为 FAILED，以原图作为缩略图。
+ * 每次认领使 attempts 加一，attempts 同时作为租约的凭证：完成、重试和失败时都要求 attempts 未变，
+ * 处理超过租约时长、任务已被重新认领时，原处理线程的结果直接丢弃，不会覆盖新的处理。
+ * 相同内容的多个任务通过 StoredFileRegistry 认领生成，未认领到的任务稍后重新处理并复用已生成的缩略图。
+ */
+@Slf4j
+@Service
+public class RenditionWorker {
+
+    // 统计耗时分位数保留的最近样本数
+    private static final int LATENCY_SAMPLES = 1000;
+
+    private static final String INSERT_JOB_SQL = "INSERT INTO rendition_jobs "
+            + "(material_id, file_name, attempts, created_at, next_attempt_at) VALUES (?, ?, 0, ?, ?)";
+
+    private static final String SELECT_DUE_SQL = "SELECT material_id FROM rendition_jobs "
+            + "WHERE next_attempt_at <= ? AND (locked_until IS NULL OR locked_until <= ?) "
+            + "ORDER BY next_attempt_at, material_id LIMIT ?";
+
+    private static final String CLAIM_SQL = "UPDATE rendition_jobs SET locked_until = ?, attempts = attempts + 1 "
+            + "WHERE material_id = ? AND attempts = ? AND next_attempt_at <= ? "
+            + "AND (locked_until IS NULL OR locked_until <= ?)";
+
+    private static final String DELETE_JOB_SQL = "DELETE FROM rendition_jobs WHERE material_id = ? AND attempts = ?";
+
+    private static final String COMPLETE_SQL = "UPDATE materials SET thumb_url = ?, renditions = ?, "
+            + "rendition_status = 'READY' WHERE id = ?";
+
+    private static final String RETRY_SQL = "UPDATE rendition_jobs SET locked_until = NULL, next_attempt_at = ?, "
+            + "last_error = ? WHERE material_id = ? AND attempts = ?";
+
+    // 相同内容的另一个任务正在生成缩略图，释放租约并撤销本次认领计入的次数，由轮询稍后重新处理
+    private static final String DEFER_SQL = "UPDATE rendition_jobs SET locked_until = NULL, next_attempt_at = ?, "
+            + "attempts = attempts - 1 WHERE material_id = ? AND attempts = ?";
+
+    private static final String RELEASE_SQL = "UPDATE rendition_jobs SET locked_until = NULL "
+            + "WHERE material_id = ? AND attempts = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final FileStorageService fileStorageService;
+    private final StoredFileRegistry storedFiles;
+    private final MaterialDetailCache materialDetailCache;
+    private final CatalogVersions catalogVersions;
+    private final ObjectMapper objectMapper;
+
+    private final ThreadPoolExecutor executor;
+    private final long leaseSeconds;
+    private final int maxAttempts;
+    private final long retryDelaySeconds;
+
+    // 已交给线程池但尚未开始处理的任务，避免轮询重复提交
+    private final Set<Long> queued = ConcurrentHashMap.newKeySet();
+    // 正在处理的任务及其租约凭证 (认领前为 0)，轮询不再重复提交，停机时释放其租约
+    private final Map<Long, Integer> running = new ConcurrentHashMap<>();
+
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final long[] latencySamples = new long[LATENCY_SAMPLES];
+    private final long[] processingSamples = new long[LATENCY_SAMPLES];
+    private long sampleCount;
+
+    public RenditionWorker(JdbcTemplate jdbcTemplate,
+                           TransactionTemplate transactionTemplate,
+                           FileStorageService fileStorageService,
+                           StoredFileRegistry storedFiles,
+                           MaterialDetailCache materialDetailCache,
+                           CatalogVersions catalogVersions,
+                           ObjectMapper objectMapper,
+                           @Value("${material.renditions.threads:2}") int threads,
+                           @Value("${material.renditions.queue-capacity:100}") int queueCapacity,
+                           @Value("${material.renditions.lease-seconds:120}") long leaseSeconds,
+                           @Value("${material.renditions.max-attempts:5}") int maxAttempts,
+                           @Value("${material.renditions.retry-delay:30}") long retryDelaySeconds) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.fileStorageService = fileStorageService;
+        this.storedFiles = storedFiles;
+        this.materialDetailCache = materialDetailCache;
+        this.catalogVersions = catalogVersions;
+        this.objectMapper = objectMapper;
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("rendition-"),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.leaseSeconds = leaseSeconds;
+        this.maxAttempts = maxAttempts;
+        this.retryDelaySeconds = retryDelaySeconds;
+    }
+
+    /**
+     * 在当前事务中登记缩略图任务，事务提交后立即交给线程池
+     */
+    public void enqueue(Long materialId, String fileName) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.update(INSERT_JOB_SQL, materialId, fileName, now, now);
+        AfterCommit.run(() -> submit(materialId));
+    }
+
+    /**
+     * 重新提交到期的任务：线程池满时被拒绝的、重试时间已到的、以及重启前未完成的
+     */
+    @Scheduled(fixedDelayString = "${material.renditions.poll-interval:10000}")
+    public void poll() {
+        int capacity = executor.getQueue().remainingCapacity();
+        if (capacity == 0) {
+            return;
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.queryForList(SELECT_DUE_SQL, Long.class, now, now, capacity).forEach(this::submit);
+    }
+
+    public RenditionQueueResponse getQueueStats() {
+        LocalDateTime now = LocalDateTime.now();
+        long depth = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM rendition_jobs", Long.class);
+        LocalDateTime oldest = jdbcTemplate.queryForObject(
+                "SELECT MIN(created_at) FROM rendition_jobs", LocalDateTime.class);
+
+        long[] latencies;
+        long[] processing;
+        synchronized (latencySamples) {
+            int size = (int) Math.min(sampleCount, LATENCY_SAMPLES);
+            latencies = Arrays.copyOf(latencySamples, size);
+            processing = Arrays.copyOf(processingSamples, size);
+        }
+        Arrays.sort(latencies);
+        Arrays.sort(processing);
+
+        return RenditionQueueResponse.builder()
+                .depth(depth)
+                .running(executor.getActiveCount())
+                .queued(executor.getQueue().size())
+                .oldestAgeSeconds(oldest == null ? null : Duration.between(oldest, now).getSeconds())
+                .completed(completed.get())
+                .failed(failed.get())
+                .latencyP50Millis(percentile(latencies, 0.5))
+                .latencyP90Millis(percentile(latencies, 0.9))
+                .latencyP99Millis(percentile(latencies, 0.99))
+                .processingP50Millis(percentile(processing, 0.5))
+                .processingP90Millis(percentile(processing, 0.9))
+                .build();
+    }
+
+    /**
+     * 停机时释放正在处理的任务的租约，重启后立即可被重新认领
+     */
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+        List<Object[]> batchArgs = new ArrayList<>();
+        running.forEach((id, attempts) -> {
+            if (attempts > 0) {
+                batchArgs.add(new Object[]{id, attempts});
+            }
+        });
+        if (!batchArgs.isEmpty()) {
+            jdbcTemplate.batchUpdate(RELEASE_SQL, batchArgs);
+        }
+    }
+
+    private void submit(Long materialId) {
+        // 处理时间超过租约时任务会重新出现在到期列表中，本实例仍在处理时不再提交
+        if (running.containsKey(materialId) || !queued.add(materialId)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                running.put(materialId, 0);
+                queued.remove(materialId);
+                try {
+                    process(materialId);
+                } catch (RuntimeException ex) {
+                    // 租约到期后由轮询重试
+                    log.error("素材 {} 的缩略图任务异常中断", materialId, ex);
+                } finally {
+                    running.remove(materialId);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // 线程池已满，任务留在表中由轮询重新提交
+            queued.remove(materialId);
+        }
+    }
+
+    private void process(Long materialId) {
+        Job job;
+        try {
+            job = jdbcTemplate.queryForObject(
+                    "SELECT file_name, attempts, created_at FROM rendition_jobs WHERE material_id = ?",
+                    (rs, rowNum) -> new Job(rs.getString("file_name"), rs.getInt("attempts") + 1,
+                            rs.getTimestamp("created_at").toLocalDateTime()),
+                    materialId);
+        } catch (EmptyResultDataAccessException e) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        Timestamp nowTs = Timestamp.valueOf(now);
+        if (jdbcTemplate.update(CLAIM_SQL, Timestamp.valueOf(now.plusSeconds(leaseSeconds)),
+                materialId, job.attempts - 1, nowTs, nowTs) == 0) {
+            // 已被其他线程或实例认领，或尚未到重试时间
+            return;
+        }
+        running.put(materialId, job.attempts);
+
+        long startedAt = System.nanoTime();
+        String renderingToken = UUID.randomUUID().toString();
+        FileStorageService.StoredImage image;
+        try {
+            image = findOrCreateRenditions(job.fileName, renderingToken, now.plusSeconds(leaseSeconds));
+        } catch (RuntimeException ex) {
+            handleFailure(materialId, job.attempts, ex);
+            return;
+        }
+        if (image == null) {
+            jdbcTemplate.update(DEFER_SQL, nowTs, materialId, job.attempts);
+            return;
+        }
+        long processingMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+
+        String renditionsJson = toJson(image.getRenditions());
+        Completion completion = transactionTemplate.execute(status -> {
+            // 先删除任务行确认租约仍然有效，之后的更新与重新认领互斥
+            if (jdbcTemplate.update(DELETE_JOB_SQL, materialId, job.attempts) == 0) {
+                return Completion.LEASE_LOST;
+            }
+            int rows = jdbcTemplate.update(COMPLETE_SQL, image.getThumbFileName(), renditionsJson, materialId);
+            boolean shared = storedFiles.recordRenditions(job.fileName, image.getThumbFileName(), renditionsJson);
+            return rows > 0 || shared ? Completion.COMPLETED : Completion.UNREFERENCED;
+        });
+        if (completion == Completion.LEASE_LOST) {
+            // 缩略图文件名由原图决定，重新认领的处理会写入并使用同样的文件，这里不删除
+            log.warn("素材 {} 的缩略图任务租约已失效，丢弃本次结果", materialId);
+            storedFiles.releaseRendering(job.fileName, renderingToken);
+            return;
+        }
+        if (completion == Completion.UNREFERENCED) {
+            // 素材已被删除，且原图不是按内容存储的，缩略图不会再被使用
+            fileStorageService.deleteFiles(image.getRenditions().values());
+            return;
+        }
+
+        materialDetailCache.invalidateAll(Collections.singleton(materialId));
+        catalogVersions.materialsChanged();
+        completed.incrementAndGet();
+        recordSample(Duration.between(job.createdAt, LocalDateTime.now()).toMillis(), processingMillis);
+    }
+
+    // 相同内容的另一个任务已经生成过缩略图时直接复用，否则认领后生成；其他任务正在生成时返回 null
+    private FileStorageService.StoredImage findOrCreateRenditions(String fileName, String token, LocalDateTime leaseUntil) {
+        FileStorageService.StoredImage existing = storedFiles.findRenditions(fileName);
+        if (existing != null) {
+            return existing;
+        }
+        if (!storedFiles.claimRendering(fileName, token, leaseUntil)) {
+            return null;
+        }
+        try {
+            return fileStorageService.createRenditions(fileName);
+        } catch (RuntimeException ex) {
+            storedFiles.releaseRendering(fileName, token);
+            throw ex;
+        }
+    }
+
+    private void handleFailure(Long materialId, int attempts, RuntimeException ex) {
+        String error = ex.getMessage() == null ? ex.getClass().getSimpleName() : ex.getMessage();
+        if (error.length() > 500) {
+            error = error.substring(0, 500);
+        }
+        if (attempts >= maxAttempts) {
+            log.error("素材 {} 的缩略图生成失败 {} 次，不再重试，以原图作为缩略图", materialId, attempts, ex);
+            Boolean held = transactionTemplate.execute(status -> {
+                if (jdbcTemplate.update(DELETE_JOB_SQL, materialId, attempts) == 0) {
+                    return false;
+                }
+                jdbcTemplate.update("UPDATE materials SET rendition_status = 'FAILED' WHERE id = ?", materialId);
+                return true;
+            });
+            if (!Boolean.TRUE.equals(held)) {
+                return;
+            }
+            materialDetailCache.invalidateAll(Collections.singleton(materialId));
+            failed.incrementAndGet();
+            return;
+        }
+        long delaySeconds = retryDelaySeconds << Math.min(attempts - 1, 10);
+        log.warn("素材 {} 的缩略图生成失败 (第 {} 次)，{} 秒后重试: {}", materialId, attempts, delaySeconds, error);
+        jdbcTemplate.update(RETRY_SQL, Timestamp.valueOf(LocalDateTime.now().plusSeconds(delaySeconds)),
+                error, materialId, attempts);
+    }
+
+    private String toJson(Map<Integer, String> renditions) {
+        try {
+            return objectMapper.writeValueAsString(renditions);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void recordSample(long latencyMillis, long processingMillis) {
+        synchronized (latencySamples) {
+            int index = (int) (sampleCount % LATENCY_SAMPLES);
+            latencySamples[index] = latencyMillis;
+            processingSamples[index] = processingMillis;
+            sampleCount++;
+        }
+    }
+
+    private static Long percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return null;
+        }
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    private enum Completion {
+        COMPLETED,
+        // 素材已被删除，且原图不是按内容存储的
+        UNREFERENCED,
+        // 租约已过期并被重新认领
+        LEASE_LOST
+    }
+
+    private static class Job {
+        private final String fileName;
+        // 认领后的 attempts，即本次租约的凭证
+        private final int attempts;
+        private final LocalDateTime createdAt;
+
+        Job(String fileName, int attempts, LocalDateTime createdAt) {
+            this.fileName = fileName;
+            this.attempts = attempts;
+            this.createdAt = createdAt;
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package com.huang.decorationsharingapi.service;
+
+import com.huang.decorationsharingapi.dto.response.StatsSeriesResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 按天汇总的统计数据
+ * 定时任务从上次汇总到的日期继续，按天、按分类汇总新增用户、上传、审核通过、拒绝、收藏和活跃用户数，
+ * 写入 stats_daily；分类ID为 0 的行是全部分类的合计。已结束的日期汇总后不再重算，当天的数据每次运行时刷新。
+ * 浏览量在写回数据库时直接累加到当天的汇总行中。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class StatsRollupService {
+
+    private static final String ROLLUP_NAME = "stats_daily";
+    // 补算历史数据时每个事务汇总的天数
+    private static final int ROLLUP_BATCH_DAYS = 31;
+    private static final int MAX_SERIES_DAYS = 3 * 366;
+
+    private static final String RESET_SQL = "UPDATE stats_daily SET new_users = 0, uploads = 0, approvals = 0, "
+            + "rejections = 0, favorites = 0, active_users = 0 WHERE day >= ? AND day < ?";
+
+    private static final String UPSERT_SQL = "INSERT INTO stats_daily "
+            + "(day, category_id, new_users, uploads, approvals, rejections, favorites, active_users) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE new_users = VALUES(new_users), "
+            + "uploads = VALUES(uploads), approvals = VALUES(approvals), rejections = VALUES(rejections), "
+            + "favorites = VALUES(favorites), active_users = VALUES(active_users)";
+
+    private static final String NEW_USERS_SQL = "SELECT DATE(created_at) AS day, NULL AS category_id, COUNT(*) "
+            + "FROM users WHERE created_at >= ? AND created_at < ? GROUP BY day";
+
+    // WITH ROLLUP 额外产生分类为 NULL 的当日合计行，以及日期为 NULL 的总计行
+    private static final String UPLOADS_SQL = "SELECT DATE(created_at) AS day, category_id, COUNT(*) "
+            + "FROM materials WHERE created_at >= ? AND created_at < ? GROUP BY day, category_id WITH ROLLUP";
+
+    // 审核只修改状态和更新时间，审核通过或拒绝的素材按更新时间归入审核当天
+    private static final String REVIEWS_SQL = "SELECT DATE(updated_at) AS day, category_id, "
+            + "SUM(status = 'APPROVED'), SUM(status = 'REJECTED') FROM materials "
+            + "WHERE updated_at >= ? AND updated_at < ? AND status IN ('APPROVED', 'REJECTED') "
+            + "GROUP BY day, category_id WITH ROLLUP";
+
+    private static final String FAVORITES_SQL = "SELECT DATE(f.created_at) AS day, m.category_id, COUNT(*) "
+            + "FROM favorites f JOIN materials m ON m.id = f.material_id "
+            + "WHERE f.created_at >= ? AND f.created_at < ? GROUP BY day, m.category_id WITH ROLLUP";
+
+    // 当天上传过素材或收藏过素材的用户
+    private static final String ACTIVE_USERS_SQL = "SELECT day, category_id, COUNT(DISTINCT user_id) FROM ("
+            + "SELECT DATE(created_at) AS day, category_id, user_id FROM materials "
+            + "WHERE created_at >= ? AND created_at < ? "
+            + "UNION ALL SELECT DATE(f.created_at), m.category_id, f.user_id "
+            + "FROM favorites f JOIN materials m ON m.id = f.material_id "
+            + "WHERE f.created_at >= ? AND f.created_at < ?"
+            + ") activity GROUP BY day, category_id WITH ROLLUP";
+
+    private static final String VIEWS_SQL = "INSERT INTO stats_daily (day, category_id, views) "
+            + "SELECT ?, m.category_id, ? FROM materials m WHERE m.id = ? "
+            + "ON DUPLICATE KEY UPDATE stats_daily.views = stats_daily.views + VALUES(views)";
+
+    private static final String TOTAL_VIEWS_SQL = "INSERT INTO stats_daily (day, category_id, views) "
+            + "VALUES (?, 0, ?) ON DUPLICATE KEY UPDATE views = views + VALUES(views)";
+
+    private static final String SERIES_SQL = "SELECT day, new_users, uploads, approvals, rejections, favorites, "
+            + "views, active_users FROM stats_daily WHERE category_id = ? AND day >= ? AND day <= ? ORDER BY day";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public enum Granularity {
+        DAY, WEEK, MONTH;
+
+        public static Granularity of(String granularity) {
+            try {
+                return valueOf(granularity.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("不支持的统计粒度: " + granularity);
+            }
+        }
+
+        LocalDate bucketStart(LocalDate day) {
+            switch (this) {
+                case WEEK:
+                    return day.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+                case MONTH:
+                    return day.withDayOfMonth(1);
+                default:
+                    return day;
+            }
+        }
+
+        LocalDate next(LocalDate bucketStart) {
+            switch (this) {
+                case WEEK:
+                    return bucketStart.plusWeeks(1);
+                case MONTH:
+                    return bucketStart.plusMonths(1);
+                default:
+                    return bucketStart.plusDays(1);
+            }
+        }
+    }
+
+    /**
+     * 从上次汇总到的日期之后继续汇总到今天，每批天数在一个事务中写入汇总行并推进汇总进度
+     */
+    @Scheduled(fixedDelayString = "${material.stats.rollup-interval:3600000}")
+    public synchronized void rollup() {
+        LocalDate today = LocalDate.now();
+        LocalDate from = nextDayToRollup(today);
+        while (!from.isAfter(today)) {
+            LocalDate start = from;
+            LocalDate end = start.plusDays(ROLLUP_BATCH_DAYS).isAfter(today)
+                    ? today.plusDays(1) : start.plusDays(ROLLUP_BATCH_DAYS);
+            transactionTemplate.executeWithoutResult(tx -> {
+                rollupDays(start, end);
+                // 今天尚未结束，进度只推进到昨天
+                LocalDate completed = end.isAfter(today) ? today.minusDays(1) : end.minusDays(1);
+                jdbcTemplate.update("INSERT INTO stats_rollup_state (name, rolled_up_to) VALUES (?, ?) "
+                                + "ON DUPLICATE KEY UPDATE rolled_up_to = VALUES(rolled_up_to)",
+                        ROLLUP_NAME, Date.valueOf(completed));
+            });
+            from = end;
+        }
+    }
+
+    /**
+     * 把写回数据库的浏览增量累加到当天的汇总行，失败时只记录日志，不影响浏览量本身的写回
+     */
+    public void recordViews(Map<Long, Long> deltas) {
+        Date today = Date.valueOf(LocalDate.now());
+        List<Object[]> batchArgs = new ArrayList<>(deltas.size());
+        long total = 0;
+        for (Map.Entry<Long, Long> entry : deltas.entrySet()) {
+            batchArgs.add(new Object[]{today, entry.getValue(), entry.getKey()});
+            total += entry.getValue();
+        }
+        long totalViews = total;
+        try {
+            transactionTemplate.executeWithoutResult(tx -> {
+                jdbcTemplate.batchUpdate(VIEWS_SQL, batchArgs);
+                jdbcTemplate.update(TOTAL_VIEWS_SQL, today, totalViews);
+            });
+        } catch (RuntimeException ex) {
+            log.warn("浏览量统计写入失败，{} 次浏览未计入按天统计", totalViews, ex);
+        }
+    }
+
+    /**
+     * 按粒度读取统计序列，只读取汇总表
+     * @param categoryId 分类ID，为空时返回全部分类的合计
+     */
+    public StatsSeriesResponse getSeries(LocalDate from, LocalDate to, String granularity, Long categoryId) {
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("开始日期不能晚于结束日期");
+        }
+        if (ChronoUnit.DAYS.between(from, to) >= MAX_SERIES_DAYS) {
+            throw new IllegalArgumentException("统计区间不能超过" + MAX_SERIES_DAYS + "天");
+        }
+        Granularity unit = Granularity.of(granularity);
+
+        // 按粒度预先生成连续的时间段，没有数据的时间段值为 0
+        Map<LocalDate, StatsSeriesResponse.Point> points = new TreeMap<>();
+        for (LocalDate start = unit.bucketStart(from); !start.isAfter(to); start = unit.next(start)) {
+            points.put(start, StatsSeriesResponse.Point.builder().start(start).build());
+        }
+        jdbcTemplate.query(SERIES_SQL, rs -> {
+            LocalDate bucket = unit.bucketStart(rs.getDate("day").toLocalDate());
+            StatsSeriesResponse.Point point = points.get(bucket);
+            point.setNewUsers(point.getNewUsers() + rs.getLong("new_users"));
+            point.setUploads(point.getUploads() + rs.getLong("uploads"));
+            point.setApprovals(point.getApprovals() + rs.getLong("approvals"));
+            point.setRejections(point.getRejections() + rs.getLong("rejections"));
+            point.setFavorites(point.getFavorites() + rs.getLong("favorites"));
+            point.setViews(point.getViews() + rs.getLong("views"));
+            point.setActiveUsers(point.getActiveUsers() + rs.getLong("active_users"));
+        }, categoryId == null ? 0L : categoryId, Date.valueOf(from), Date.valueOf(to));
+
+        // 活跃用户不能跨天相加，按周、按月时取时间段在查询区间内各天的日均值
+        if (unit != Granularity.DAY) {
+            points.forEach((start, point) -> {
+                LocalDate first = start.isBefore(from) ? from : start;
+                LocalDate last = unit.next(start).minusDays(1).isAfter(to) ? to : unit.next(start).minusDays(1);
+                long days = ChronoUnit.DAYS.between(first, last) + 1;
+                point.setActiveUsers(Math.round(point.getActiveUsers() * 10 / days) / 10.0);  // 保留一位小数
+            });
+        }
+
+        return StatsSeriesResponse.builder()
+                .from(from)
+                .to(to)
+                .granularity(unit.name())
+                .categoryId(categoryId)
+                .points(new ArrayList<>(points.values()))
+                .build();
+    }
+
+    private LocalDate nextDayToRollup(LocalDate today) {
+        List<Date> rolledUpTo = jdbcTemplate.queryForList(
+                "SELECT rolled_up_to FROM stats_rollup_state WHERE name = ?", Date.class, ROLLUP_NAME);
+        if (!rolledUpTo.isEmpty() && rolledUpTo.get(0) != null) {
+            return rolledUpTo.get(0).toLocalDate().plusDays(1);
+        }
+        // 首次汇总从最早的用户注册日期开始
+        Date earliest = jdbcTemplate.queryForObject("SELECT DATE(MIN(created_at)) FROM users", Date.class);
+        return earliest == null ? today : earliest.toLocalDate();
+    }
+
+    // 汇总 [start, end) 内每一天的数据，覆盖这些日期已有的汇总值（浏览量除外）
+    private void rollupDays(LocalDate start, LocalDate end) {
+        Date startDate = Date.valueOf(start);
+        Date endDate = Date.valueOf(end);
+        Map<LocalDate, Map<Long, long[]>> rows = new TreeMap<>();
+
+        jdbcTemplate.query(NEW_USERS_SQL, rs -> {
+            row(rows, rs)[0] = rs.getLong(3);
+        }, startDate, endDate);
+        jdbcTemplate.query(UPLOADS_SQL, rs -> {
+            if (rs.getDate("day") != null) {
+                row(rows, rs)[1] = rs.getLong(3);
+            }
+        }, startDate, endDate);
+        jdbcTemplate.query(REVIEWS_SQL, rs -> {
+            if (rs.getDate("day") != null) {
+                long[] row = row(rows, rs);
+                row[2] = rs.getLong(3);
+                row[3] = rs.getLong(4);
+            }
+        }, startDate, endDate);
+        jdbcTemplate.query(FAVORITES_SQL, rs -> {
+            if (rs.getDate("day") != null) {
+                row(rows, rs)[4] = rs.getLong(3);
+            }
+        }, startDate, endDate);
+        jdbcTemplate.query(ACTIVE_USERS_SQL, rs -> {
+            if (rs.getDate("day") != null) {
+                row(rows, rs)[5] = rs.getLong(3);
+            }
+        }, startDate, endDate, startDate, endDate);
+
+        jdbcTemplate.update(RESET_SQL, startDate, endDate);
+        List<Object[]> batchArgs = new ArrayList<>();
+        rows.forEach((day, categories) -> categories.forEach((categoryId, values) ->
+                batchArgs.add(new Object[]{Date.valueOf(day), categoryId,
+                        values[0], values[1], values[2], values[3], values[4], values[5]})));
+        jdbcTemplate.batchUpdate(UPSERT_SQL, batchArgs);
+        log.debug("已汇总 {} 至 {} 的统计数据: {} 行", start, end.minusDays(1), batchArgs.size());
+    }
+
+    // 按 (日期, 分类) 取汇总行，分类为 NULL 的合计行记为分类 0
+    private static long[] row(Map<LocalDate, Map<Long, long[]>> rows, ResultSet rs) throws SQLException {
+        return rows.computeIfAbsent(rs.getDate("day").toLocalDate(), day -> new TreeMap<>())
+                .computeIfAbsent(rs.getLong("category_id"), categoryId -> new long[6]);
+    }
+}
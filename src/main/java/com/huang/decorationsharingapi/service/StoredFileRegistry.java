@@ -0,0 +1,227 @@
+package com.huang.decorationsharingapi.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 按内容寻址的素材原图
+ * 原图以 SHA-256 命名，stored_files 记录每个文件被多少素材引用以及已生成的缩略图，
+ * 相同内容的重复上传只增加引用计数，不再写入文件和生成缩略图。
+ * 引用计数归零的文件保留一段时间后由定时清理删除，清理时锁定记录行，与同一内容的新上传互斥。
+ * 同一内容的多个缩略图任务通过记录行上的租约认领生成，同时只有一个任务写入缩略图文件。
+ */
+@Slf4j
+@Service
+public class StoredFileRegistry {
+
+    // 每次清理处理的文件数上限
+    private static final int SWEEP_BATCH_SIZE = 100;
+
+    private static final String ACQUIRE_SQL = "INSERT INTO stored_files (file_name, ref_count, created_at, updated_at) "
+            + "VALUES (?, 1, ?, ?) ON DUPLICATE KEY UPDATE ref_count = ref_count + 1, updated_at = VALUES(updated_at)";
+
+    private static final String RELEASE_SQL = "UPDATE stored_files SET ref_count = ref_count - 1, updated_at = ? "
+            + "WHERE file_name = ? AND ref_count > 0";
+
+    private static final String RECORD_RENDITIONS_SQL = "UPDATE stored_files SET thumb_file_name = ?, renditions = ?, "
+            + "rendering_token = NULL, rendering_until = NULL WHERE file_name = ?";
+
+    private static final String CLAIM_RENDERING_SQL = "UPDATE stored_files SET rendering_token = ?, rendering_until = ? "
+            + "WHERE file_name = ? AND renditions IS NULL AND (rendering_until IS NULL OR rendering_until <= ?)";
+
+    private static final String RELEASE_RENDERING_SQL = "UPDATE stored_files SET rendering_token = NULL, "
+            + "rendering_until = NULL WHERE file_name = ? AND rendering_token = ?";
+
+    private static final String SELECT_ORPHANS_SQL = "SELECT file_name FROM stored_files "
+            + "WHERE ref_count = 0 AND updated_at < ? ORDER BY updated_at LIMIT ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    // 事务结束后的清理需要在独立的新事务中执行
+    private final TransactionTemplate cleanupTemplate;
+    private final FileStorageService fileStorageService;
+    private final ObjectMapper objectMapper;
+    private final long orphanGraceSeconds;
+
+    public StoredFileRegistry(JdbcTemplate jdbcTemplate,
+                              TransactionTemplate transactionTemplate,
+                              FileStorageService fileStorageService,
+                              ObjectMapper objectMapper,
+                              @Value("${material.storage.orphan-grace:86400}") long orphanGraceSeconds) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.cleanupTemplate = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        this.cleanupTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.fileStorageService = fileStorageService;
+        this.objectMapper = objectMapper;
+        this.orphanGraceSeconds = orphanGraceSeconds;
+    }
+
+    /**
+     * 存储素材原图并在当前事务中增加引用计数
+     * 计数行在事务结束前保持锁定，文件在加锁后才移动到位，清理不会删除刚被重新引用的文件；
+     * 事务回滚时删除本次调用新建的文件
+     * @return 按内容命名的文件名
+     */
+    @Transactional
+    public String store(MultipartFile file) {
+        FileStorageService.StagedImage staged = fileStorageService.stageImage(file);
+        try {
+            Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+            jdbcTemplate.update(ACQUIRE_SQL, staged.getFileName(), now, now);
+            if (fileStorageService.commitStaged(staged)) {
+                deleteOnRollback(staged.getFileName());
+            }
+            return staged.getFileName();
+        } catch (RuntimeException ex) {
+            fileStorageService.discardStaged(staged);
+            throw ex;
+        }
+    }
+
+    private void deleteOnRollback(String fileName) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    return;
+                }
+                try {
+                    cleanupTemplate.executeWithoutResult(tx -> removeUnregistered(fileName));
+                } catch (RuntimeException ex) {
+                    log.warn("删除回滚上传的原图 {} 失败", fileName, ex);
+                }
+            }
+        });
+    }
+
+    // 回滚释放锁后，同一内容的另一个上传可能已经看到文件存在而没有重新写入；
+    // 锁定计数行确认没有任何上传登记该文件后才删除，正在进行的上传会先提交或回滚
+    private void removeUnregistered(String fileName) {
+        List<Integer> rows = jdbcTemplate.queryForList(
+                "SELECT ref_count FROM stored_files WHERE file_name = ? FOR UPDATE", Integer.class, fileName);
+        if (rows.isEmpty()) {
+            fileStorageService.deleteFiles(Collections.singletonList(fileName));
+        }
+    }
+
+    /**
+     * 在当前事务中减少引用计数，旧版本以随机文件名存储的原图没有计数行，不受影响
+     */
+    public void release(String fileName) {
+        jdbcTemplate.update(RELEASE_SQL, Timestamp.valueOf(LocalDateTime.now()), fileName);
+    }
+
+    /**
+     * 查询同一内容已生成的缩略图
+     * @return 尚未生成或没有计数行时返回 null
+     */
+    public FileStorageService.StoredImage findRenditions(String fileName) {
+        List<FileStorageService.StoredImage> images = jdbcTemplate.query(
+                "SELECT thumb_file_name, renditions FROM stored_files WHERE file_name = ? AND renditions IS NOT NULL",
+                (rs, rowNum) -> new FileStorageService.StoredImage(fileName, rs.getString("thumb_file_name"),
+                        fromJson(rs.getString("renditions"))),
+                fileName);
+        return images.isEmpty() ? null : images.get(0);
+    }
+
+    /**
+     * 认领同一内容的缩略图生成，租约到期前其他任务不能认领
+     * @return 认领成功或没有计数行 (旧版本的随机文件名) 时返回 true；其他任务正在生成或已经生成完成时返回 false
+     */
+    public boolean claimRendering(String fileName, String token, LocalDateTime until) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        if (jdbcTemplate.update(CLAIM_RENDERING_SQL, token, Timestamp.valueOf(until), fileName, now) > 0) {
+            return true;
+        }
+        Long rows = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM stored_files WHERE file_name = ?", Long.class, fileName);
+        return rows == null || rows == 0;
+    }
+
+    /**
+     * 生成失败时释放认领，等待中的任务可以立即重新认领
+     */
+    public void releaseRendering(String fileName, String token) {
+        jdbcTemplate.update(RELEASE_RENDERING_SQL, fileName, token);
+    }
+
+    /**
+     * 在当前事务中记录生成的缩略图并结束认领，供相同内容的后续上传复用
+     * @return 是否存在计数行
+     */
+    public boolean recordRenditions(String fileName, String thumbFileName, String renditionsJson) {
+        return jdbcTemplate.update(RECORD_RENDITIONS_SQL, thumbFileName, renditionsJson, fileName) > 0;
+    }
+
+    /**
+     * 删除引用计数归零超过保留时长的原图和缩略图
+     */
+    @Scheduled(fixedDelayString = "${material.storage.sweep-interval:600000}")
+    public void sweep() {
+        Timestamp cutoff = Timestamp.valueOf(LocalDateTime.now().minusSeconds(orphanGraceSeconds));
+        List<String> fileNames = jdbcTemplate.queryForList(SELECT_ORPHANS_SQL, String.class, cutoff, SWEEP_BATCH_SIZE);
+        int removed = 0;
+        for (String fileName : fileNames) {
+            try {
+                if (Boolean.TRUE.equals(transactionTemplate.execute(status -> remove(fileName)))) {
+                    removed++;
+                }
+            } catch (RuntimeException ex) {
+                log.warn("清理原图 {} 失败", fileName, ex);
+            }
+        }
+        if (removed > 0) {
+            log.info("已清理 {} 个不再被引用的原图", removed);
+        }
+    }
+
+    // 锁定计数行后再次确认没有引用、也没有任务正在生成缩略图，删除计数行和文件；
+    // 同一内容的新上传会等待锁释放后重新写入文件
+    private boolean remove(String fileName) {
+        List<String> renditions = jdbcTemplate.query(
+                "SELECT renditions FROM stored_files WHERE file_name = ? AND ref_count = 0 "
+                        + "AND (rendering_until IS NULL OR rendering_until <= ?) FOR UPDATE",
+                (rs, rowNum) -> rs.getString("renditions"), fileName, Timestamp.valueOf(LocalDateTime.now()));
+        if (renditions.isEmpty()) {
+            return false;
+        }
+        jdbcTemplate.update("DELETE FROM stored_files WHERE file_name = ?", fileName);
+        List<String> files = new ArrayList<>();
+        files.add(fileName);
+        if (renditions.get(0) != null) {
+            files.addAll(fromJson(renditions.get(0)).values());
+        }
+        fileStorageService.deleteFiles(files);
+        return true;
+    }
+
+    private Map<Integer, String> fromJson(String json) {
+        try {
+            return objectMapper.readValue(json, new TypeReference<TreeMap<Integer, String>>() {
+            });
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.huang.decorationsharingapi.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 令牌版本表
+ * JWT 中携带签发时用户的令牌版本，认证时与此表比对，不一致的令牌视为失效，请求无需再查询用户表。
+ * 表中只保存版本不为 0 的用户和已删除的用户，启动时从数据库加载，本实例的修改在事务提交后即时生效，
+ * 其他实例的修改由定时刷新同步。
+ */
+@Service
+@RequiredArgsConstructor
+public class TokenVersionRegistry {
+
+    // 已删除用户的版本，任何令牌都无法匹配
+    private static final int REVOKED = -1;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${jwt.expiration}")
+    private long jwtExpiration;
+
+    private volatile Map<Long, Integer> versions = new ConcurrentHashMap<>();
+
+    /**
+     * 令牌中的版本是否仍然有效
+     */
+    public boolean isCurrent(long userId, int version) {
+        return versions.getOrDefault(userId, 0) == version;
+    }
+
+    /**
+     * 重新加载全部版本，与刷新单个用户互斥，避免用加载前的快照覆盖刚提交的修改
+     */
+    @PostConstruct
+    @Scheduled(initialDelayString = "${material.security.token-refresh-interval:30000}",
+            fixedDelayString = "${material.security.token-refresh-interval:30000}")
+    public synchronized void refresh() {
+        Map<Long, Integer> loaded = new ConcurrentHashMap<>();
+        jdbcTemplate.query("SELECT id, token_version FROM users WHERE token_version <> 0",
+                rs -> {
+                    loaded.put(rs.getLong("id"), rs.getInt("token_version"));
+                });
+        jdbcTemplate.query("SELECT user_id FROM revoked_user_tokens WHERE expires_at > ?",
+                rs -> {
+                    loaded.put(rs.getLong("user_id"), REVOKED);
+                }, Timestamp.valueOf(LocalDateTime.now()));
+        versions = loaded;
+    }
+
+    /**
+     * 当前事务提交后从数据库重新读取该用户的版本
+     */
+    public void refreshAfterCommit(Long userId) {
+        AfterCommit.run(() -> reload(userId));
+    }
+
+    /**
+     * 吊销已删除用户的全部令牌，吊销记录保留到已签发的令牌全部过期，过期的记录在下次吊销时顺带清理
+     */
+    public void revoke(Long userId) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime expiresAt = now.plus(Duration.ofMillis(jwtExpiration));
+        jdbcTemplate.update("DELETE FROM revoked_user_tokens WHERE expires_at <= ?", Timestamp.valueOf(now));
+        jdbcTemplate.update("INSERT INTO revoked_user_tokens (user_id, expires_at) VALUES (?, ?) "
+                + "ON DUPLICATE KEY UPDATE expires_at = VALUES(expires_at)", userId, Timestamp.valueOf(expiresAt));
+        AfterCommit.run(() -> {
+            synchronized (this) {
+                versions.put(userId, REVOKED);
+            }
+        });
+    }
+
+    private synchronized void reload(Long userId) {
+        List<Integer> current = jdbcTemplate.queryForList(
+                "SELECT token_version FROM users WHERE id = ?", Integer.class, userId);
+        if (current.isEmpty()) {
+            return;
+        }
+        if (current.get(0) == 0) {
+            versions.remove(userId);
+        } else {
+            versions.put(userId, current.get(0));
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.huang.decorationsharingapi.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 素材热度分的增量刷新
+ * 热度分 = ln(1 + 浏览量 + 3 × 收藏数) + (发布时间 - 基准时间) / TAU，
+ * 发布时间每晚 TAU 秒，分数基准高 1，较早的素材需要成倍的互动才能排在新素材前面。
+ * 分数只在浏览量或收藏数变化时需要重算：变化的素材先登记，由定时任务批量重算。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TrendingScoreUpdater {
+
+    // 与 db/upgrade.sql 中初始化热度分的表达式保持一致
+    static final String SCORE_EXPRESSION = "LN(1 + COALESCE(views, 0) + 3 * COALESCE(favorites, 0)) "
+            + "+ (UNIX_TIMESTAMP(created_at) - 1704067200) / 45000";
+
+    private static final String UPDATE_SQL = "UPDATE materials SET trending_score = " + SCORE_EXPRESSION
+            + " WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CatalogVersions catalogVersions;
+
+    private final Set<Long> dirty = ConcurrentHashMap.newKeySet();
+
+    public void markDirty(Long materialId) {
+        dirty.add(materialId);
+    }
+
+    public void markDirty(Collection<Long> materialIds) {
+        dirty.addAll(materialIds);
+    }
+
+    @Scheduled(fixedDelayString = "${material.trending.refresh-interval:60000}")
+    public synchronized void refresh() {
+        Set<Long> ids = new TreeSet<>();
+        for (Long id : dirty) {
+            if (dirty.remove(id)) {
+                ids.add(id);
+            }
+        }
+        if (ids.isEmpty()) {
+            return;
+        }
+
+        List<Object[]> batchArgs = new ArrayList<>(ids.size());
+        ids.forEach(id -> batchArgs.add(new Object[]{id}));
+        try {
+            jdbcTemplate.batchUpdate(UPDATE_SQL, batchArgs);
+            catalogVersions.rankingChanged();
+        } catch (RuntimeException ex) {
+            // 刷新失败时重新登记，下次重试
+            log.error("热度分刷新失败，{} 个素材将在下次重试", ids.size(), ex);
+            dirty.addAll(ids);
+        }
+    }
+}
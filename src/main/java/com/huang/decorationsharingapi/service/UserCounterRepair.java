@@ -0,0 +1,101 @@
+package com.huang.decorationsharingapi.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 用户上传数和收藏数的批量校正
+ * 计数随素材和收藏记录的增删原地更新，直接修改数据库等情况可能使其偏离实际值。
+ * 校正按用户ID分段进行，只改写与实际值不一致的行。
+ * 每段在 READ COMMITTED 事务中先锁定该段的用户行，再以不加锁的一致性读统计素材和收藏记录：
+ * 计数的增减总是在持有用户行锁时提交，统计要么包含已提交的变更，要么变更在校正之后才把增量叠加上去，
+ * 校正本身不会造成偏差。统计不对素材和收藏记录加锁，不会与正在修改记录、等待用户行锁的事务互相死锁，
+ * 锁的顺序由校正自己保证，收藏等写入路径不需要预先锁定任何行。
+ */
+@Slf4j
+@Service
+public class UserCounterRepair {
+
+    private static final int SEGMENT_SIZE = 1000;
+
+    private static final String LOCK_SQL = "SELECT id, upload_count, favorite_count FROM users "
+            + "WHERE id >= ? AND id < ? FOR UPDATE";
+
+    private static final String COUNT_UPLOADS_SQL = "SELECT user_id, COUNT(*) FROM materials "
+            + "WHERE user_id >= ? AND user_id < ? GROUP BY user_id";
+
+    private static final String COUNT_FAVORITES_SQL = "SELECT user_id, COUNT(*) FROM favorites "
+            + "WHERE user_id >= ? AND user_id < ? GROUP BY user_id";
+
+    private static final String REPAIR_SQL = "UPDATE users SET upload_count = ?, favorite_count = ? WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public UserCounterRepair(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+    }
+
+    /**
+     * 按实际的素材和收藏记录重算全部用户的计数
+     * @return 被校正的用户数
+     */
+    @Scheduled(cron = "${material.users.counter-repair-cron:0 30 3 * * *}")
+    public synchronized int repair() {
+        Long maxId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM users", Long.class);
+        if (maxId == null) {
+            return 0;
+        }
+        int repaired = 0;
+        for (long from = 1; from <= maxId; from += SEGMENT_SIZE) {
+            long to = from + SEGMENT_SIZE;
+            long segmentFrom = from;
+            Integer segment = transactionTemplate.execute(status -> repairSegment(segmentFrom, to));
+            repaired += segment == null ? 0 : segment;
+        }
+        if (repaired > 0) {
+            log.info("已校正 {} 个用户的上传数和收藏数", repaired);
+        }
+        return repaired;
+    }
+
+    private int repairSegment(long from, long to) {
+        List<long[]> users = jdbcTemplate.query(LOCK_SQL,
+                (rs, rowNum) -> new long[]{rs.getLong(1), rs.getLong(2), rs.getLong(3)}, from, to);
+        Map<Long, Long> uploads = countByUser(COUNT_UPLOADS_SQL, from, to);
+        Map<Long, Long> favorites = countByUser(COUNT_FAVORITES_SQL, from, to);
+
+        List<Object[]> batchArgs = new ArrayList<>();
+        for (long[] user : users) {
+            long uploadCount = uploads.getOrDefault(user[0], 0L);
+            long favoriteCount = favorites.getOrDefault(user[0], 0L);
+            if (user[1] != uploadCount || user[2] != favoriteCount) {
+                batchArgs.add(new Object[]{uploadCount, favoriteCount, user[0]});
+            }
+        }
+        if (!batchArgs.isEmpty()) {
+            jdbcTemplate.batchUpdate(REPAIR_SQL, batchArgs);
+        }
+        return batchArgs.size();
+    }
+
+    private Map<Long, Long> countByUser(String sql, long from, long to) {
+        Map<Long, Long> counts = new HashMap<>();
+        jdbcTemplate.query(sql, rs -> {
+            counts.put(rs.getLong(1), rs.getLong(2));
+        }, from, to);
+        return counts;
+    }
+}
@@ -17,6 +17,10 @@ public class UserService {
 
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
+    private final MaterialDetailCache materialDetailCache;
+    private final CatalogVersions catalogVersions;
+    private final AdminStatsAggregate adminStats;
+    private final TokenVersionRegistry tokenVersions;
 
     public User findByUsername(String username) {
         return userRepository.findByUsername(username)
@@ -42,18 +46,26 @@ public class UserService {
                 .status(User.Status.ACTIVE)
                 .build();
 
-        return userRepository.save(user);
+        User savedUser = userRepository.save(user);
+        adminStats.userCreatedAfterCommit(savedUser.getCreatedAt());
+        return savedUser;
     }
 
     @Transactional
     public User updateProfile(String username, UpdateProfileRequest updateRequest) {
         User user = findByUsername(username);
+        // 用户名、头像或简介变化时，素材详情里的上传者信息需要失效
+        boolean uploaderChanged = false;
 
         if (updateRequest.getUsername() != null && !updateRequest.getUsername().equals(user.getUsername())) {
             if (userRepository.existsByUsername(updateRequest.getUsername())) {
                 throw new IllegalArgumentException("用户名已被使用");
             }
             user.setUsername(updateRequest.getUsername());
+            uploaderChanged = true;
+            // 令牌以用户名为主体，改名后旧令牌失效，避免该用户名被他人注册后沿用
+            userRepository.incrementTokenVersion(user.getId());
+            tokenVersions.refreshAfterCommit(user.getId());
         }
 
         if (updateRequest.getEmail() != null && !updateRequest.getEmail().equals(user.getEmail())) {
@@ -63,14 +75,29 @@ public class UserService {
             user.setEmail(updateRequest.getEmail());
         }
 
-        if (updateRequest.getAvatar() != null) {
+        if (updateRequest.getAvatar() != null && !updateRequest.getAvatar().equals(user.getAvatar())) {
             user.setAvatar(updateRequest.getAvatar());
+            uploaderChanged = true;
         }
 
-        if (updateRequest.getBio() != null) {
+        if (updateRequest.getBio() != null && !updateRequest.getBio().equals(user.getBio())) {
             user.setBio(updateRequest.getBio());
+            uploaderChanged = true;
         }
 
+        if (uploaderChanged) {
+            materialDetailCache.invalidateUploaderAfterCommit(user.getId());
+            catalogVersions.materialsChangedAfterCommit();
+        }
+        return userRepository.save(user);
+    }
+
+    @Transactional
+    public User updateAvatar(String username, String avatar) {
+        User user = findByUsername(username);
+        user.setAvatar(avatar);
+        materialDetailCache.invalidateUploaderAfterCommit(user.getId());
+        catalogVersions.materialsChangedAfterCommit();
         return userRepository.save(user);
     }
 }
\ No newline at end of file
@@ -0,0 +1,112 @@
+package com.huang.decorationsharingapi.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 素材浏览量的写回缓冲
+ * 浏览只在内存中按素材计数，由定时任务批量执行 views = views + ? 写回数据库，
+ * 读取时以数据库中的值加上尚未写回的增量作为当前浏览量。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ViewCountBuffer {
+
+    private static final String UPDATE_SQL = "UPDATE materials SET views = views + ? WHERE id = ?";
+
+    // 计数器已被移出缓冲，递增方需要重新获取
+    private static final long RETIRED = Long.MIN_VALUE;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final MaterialDetailCache materialDetailCache;
+    private final TrendingScoreUpdater trendingScoreUpdater;
+    private final StatsRollupService statsRollupService;
+
+    private final ConcurrentHashMap<Long, AtomicLong> pending = new ConcurrentHashMap<>();
+
+    public void increment(Long materialId) {
+        add(materialId, 1);
+    }
+
+    /**
+     * 获取尚未写回数据库的浏览增量
+     */
+    public long getPending(Long materialId) {
+        AtomicLong counter = pending.get(materialId);
+        if (counter == null) {
+            return 0;
+        }
+        long value = counter.get();
+        return value == RETIRED ? 0 : value;
+    }
+
+    /**
+     * 将缓冲中的增量批量写回数据库，按素材ID排序以避免与其他更新互相死锁
+     * 整批在一个事务中执行，失败时全部回滚后再放回缓冲，已写入的增量不会在下次重复计入
+     */
+    @Scheduled(fixedDelayString = "${material.views.flush-interval:5000}")
+    public synchronized void flush() {
+        Map<Long, Long> deltas = new TreeMap<>();
+        for (Map.Entry<Long, AtomicLong> entry : pending.entrySet()) {
+            AtomicLong counter = entry.getValue();
+            long delta = counter.getAndSet(0);
+            if (delta > 0) {
+                deltas.put(entry.getKey(), delta);
+            } else if (counter.compareAndSet(0, RETIRED)) {
+                // 上一轮之后没有新的浏览，移出缓冲
+                pending.remove(entry.getKey(), counter);
+            }
+        }
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        List<Object[]> batchArgs = new ArrayList<>(deltas.size());
+        deltas.forEach((materialId, delta) -> batchArgs.add(new Object[]{delta, materialId}));
+        try {
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(UPDATE_SQL, batchArgs));
+        } catch (RuntimeException ex) {
+            // 写回失败时事务已整体回滚，放回缓冲，下次重试
+            log.error("浏览量写回失败，{} 个素材的增量将在下次重试", deltas.size(), ex);
+            deltas.forEach(this::add);
+            return;
+        }
+        // 以下操作在写回提交之后，失败时不能再放回缓冲
+        materialDetailCache.invalidateAll(deltas.keySet());
+        trendingScoreUpdater.markDirty(deltas.keySet());
+        statsRollupService.recordViews(deltas);
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    private void add(Long materialId, long delta) {
+        while (true) {
+            AtomicLong counter = pending.computeIfAbsent(materialId, id -> new AtomicLong());
+            long value = counter.get();
+            if (value == RETIRED) {
+                pending.remove(materialId, counter);
+                continue;
+            }
+            if (counter.compareAndSet(value, value + delta)) {
+                return;
+            }
+        }
+    }
+}
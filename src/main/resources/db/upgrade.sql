@@ -0,0 +1,92 @@
+-- 数据库结构变更脚本
+-- jpa.hibernate.ddl-auto 为 validate，新版本部署前需要按顺序执行以下语句
+
+-- 素材列表游标分页：按状态、分类过滤后按 (排序键, id) 顺序读取
+CREATE INDEX idx_materials_status_created ON materials (status, created_at, id);
+CREATE INDEX idx_materials_status_category_created ON materials (status, category_id, created_at, id);
+CREATE INDEX idx_materials_status_views ON materials (status, views, id);
+
+-- 收藏去重：同一用户对同一素材只保留一条收藏记录，并按收藏记录重算收藏数
+DELETE f1 FROM favorites f1
+    JOIN favorites f2 ON f1.user_id = f2.user_id AND f1.material_id = f2.material_id AND f1.id > f2.id;
+ALTER TABLE favorites ADD CONSTRAINT uk_favorites_user_material UNIQUE (user_id, material_id);
+UPDATE materials m SET favorites = (SELECT COUNT(*) FROM favorites f WHERE f.material_id = m.id);
+
+-- 热度排序：预先计算的热度分，按状态、分类过滤后按 (热度分, id) 顺序读取
+ALTER TABLE materials ADD COLUMN trending_score DOUBLE NOT NULL DEFAULT 0;
+UPDATE materials SET trending_score = LN(1 + COALESCE(views, 0) + 3 * COALESCE(favorites, 0))
+    + (UNIX_TIMESTAMP(created_at) - 1704067200) / 45000;
+CREATE INDEX idx_materials_status_trending ON materials (status, trending_score, id);
+CREATE INDEX idx_materials_status_category_trending ON materials (status, category_id, trending_score, id);
+
+-- 审核租约：领取素材的管理员和租约到期时间，领取时按 (状态, 提交时间, id) 顺序跳过已加锁的行
+ALTER TABLE materials ADD COLUMN claimed_by BIGINT NULL, ADD COLUMN claim_expires_at DATETIME(6) NULL;
+CREATE INDEX idx_materials_claimed_by ON materials (claimed_by);
+
+-- 按天汇总的统计数据：category_id 为 0 的行是全部分类的合计，新增用户数只记在合计行
+CREATE TABLE stats_daily (
+    day DATE NOT NULL,
+    category_id BIGINT NOT NULL,
+    new_users BIGINT NOT NULL DEFAULT 0,
+    uploads BIGINT NOT NULL DEFAULT 0,
+    approvals BIGINT NOT NULL DEFAULT 0,
+    rejections BIGINT NOT NULL DEFAULT 0,
+    favorites BIGINT NOT NULL DEFAULT 0,
+    views BIGINT NOT NULL DEFAULT 0,
+    active_users BIGINT NOT NULL DEFAULT 0,
+    PRIMARY KEY (category_id, day)
+);
+-- 汇总进度：rolled_up_to 及之前的日期已汇总完成
+CREATE TABLE stats_rollup_state (
+    name VARCHAR(50) NOT NULL PRIMARY KEY,
+    rolled_up_to DATE
+);
+-- 汇总任务按日期范围读取基础表
+CREATE INDEX idx_users_created ON users (created_at);
+CREATE INDEX idx_materials_created ON materials (created_at);
+CREATE INDEX idx_materials_updated ON materials (updated_at);
+CREATE INDEX idx_favorites_created ON favorites (created_at);
+
+-- 用户上传数和收藏数：随素材、收藏记录的增删原地更新，并按实际记录初始化
+ALTER TABLE users ADD COLUMN upload_count INT NOT NULL DEFAULT 0, ADD COLUMN favorite_count INT NOT NULL DEFAULT 0;
+UPDATE users u SET upload_count = (SELECT COUNT(*) FROM materials m WHERE m.user_id = u.id),
+    favorite_count = (SELECT COUNT(*) FROM favorites f WHERE f.user_id = u.id);
+
+-- 令牌版本：JWT 中携带签发时的版本，角色、状态或用户名变化后旧令牌失效
+ALTER TABLE users ADD COLUMN token_version INT NOT NULL DEFAULT 0;
+-- 已删除用户的令牌吊销记录，令牌过期后即可清理
+CREATE TABLE revoked_user_tokens (
+    user_id BIGINT NOT NULL PRIMARY KEY,
+    expires_at DATETIME(6) NOT NULL
+);
+
+-- 素材各宽度缩略图的文件名，键为宽度 (像素)
+ALTER TABLE materials ADD COLUMN renditions JSON;
+
+-- 缩略图在后台生成：上传时为 PENDING，已有素材视为 READY
+ALTER TABLE materials ADD COLUMN rendition_status ENUM('PENDING', 'READY', 'FAILED') DEFAULT 'READY';
+-- 待生成缩略图的任务，生成成功或最终失败后删除
+CREATE TABLE rendition_jobs (
+    material_id BIGINT NOT NULL PRIMARY KEY,
+    file_name VARCHAR(255) NOT NULL,
+    attempts INT NOT NULL DEFAULT 0,
+    created_at DATETIME(6) NOT NULL,
+    next_attempt_at DATETIME(6) NOT NULL,
+    locked_until DATETIME(6),
+    last_error VARCHAR(500)
+);
+CREATE INDEX idx_rendition_jobs_due ON rendition_jobs (next_attempt_at);
+
+-- 按内容 (SHA-256) 命名的素材原图及其引用计数，已有的随机文件名原图不登记
+CREATE TABLE stored_files (
+    file_name VARCHAR(255) NOT NULL PRIMARY KEY,
+    ref_count INT NOT NULL,
+    thumb_file_name VARCHAR(255),
+    renditions JSON,
+    -- 正在生成缩略图的任务的凭证和租约到期时间，同一内容同时只有一个任务生成
+    rendering_token VARCHAR(36),
+    rendering_until DATETIME(6),
+    created_at DATETIME(6) NOT NULL,
+    updated_at DATETIME(6) NOT NULL
+);
+CREATE INDEX idx_stored_files_orphans ON stored_files (ref_count, updated_at);
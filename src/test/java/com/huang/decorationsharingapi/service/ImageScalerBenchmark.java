@@ -0,0 +1,74 @@
+package com.huang.decorationsharingapi.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 把 4000x3000 的解码结果缩小到各档宽度的耗时：原先的 getScaledInstance(SCALE_SMOOTH) 与 ImageScaler
+ * 以测试类路径运行 main 方法，不随 mvn test 执行
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Djava.awt.headless=true")
+public class ImageScalerBenchmark {
+
+    @Param({"300", "1200"})
+    private int width;
+
+    private BufferedImage source;
+
+    @Setup
+    public void setUp() {
+        // ImageIO 解码 JPEG 得到的通常是 TYPE_3BYTE_BGR
+        source = new BufferedImage(4000, 3000, BufferedImage.TYPE_3BYTE_BGR);
+        Graphics2D g = source.createGraphics();
+        g.setPaint(new GradientPaint(0, 0, new Color(230, 200, 160), 4000, 3000, new Color(60, 80, 120)));
+        g.fillRect(0, 0, 4000, 3000);
+        g.setColor(new Color(180, 60, 40));
+        g.fillOval(800, 750, 1333, 1500);
+        g.dispose();
+    }
+
+    @Benchmark
+    public BufferedImage scaledInstance() {
+        int height = (int) (source.getHeight() * (width / (double) source.getWidth()));
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = scaled.createGraphics();
+        g.drawImage(source.getScaledInstance(width, height, Image.SCALE_SMOOTH), 0, 0, null);
+        g.dispose();
+        return scaled;
+    }
+
+    @Benchmark
+    public BufferedImage imageScaler() {
+        return ImageScaler.scaleToWidth(source, width);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ImageScalerBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,129 @@
+package com.huang.decorationsharingapi.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 与原先 getScaledInstance(SCALE_SMOOTH) 的输出逐像素比较
+ */
+class ImageScalerTests {
+
+    private static final int[] WIDTHS = {150, 300, 600, 1200};
+
+    @Test
+    void matchesAreaAveragingOnPhotographicContent() {
+        // 宽度不是目标宽度的 2^k 倍，覆盖先缩放再减半的路径
+        BufferedImage source = photographic(2000, 1333, BufferedImage.TYPE_3BYTE_BGR);
+
+        for (int width : WIDTHS) {
+            BufferedImage expected = legacyScaleToWidth(source, width);
+            BufferedImage actual = ImageScaler.scaleToWidth(source, width);
+
+            assertThat(actual.getWidth()).isEqualTo(expected.getWidth());
+            assertThat(actual.getHeight()).isEqualTo(expected.getHeight());
+            assertThat(meanAbsoluteError(expected, actual)).as("width %d", width).isLessThan(0.5);
+            assertThat(psnr(expected, actual)).as("width %d", width).isGreaterThan(50.0);
+        }
+    }
+
+    @Test
+    void doesNotAliasFineDetail() {
+        BufferedImage source = fineLines(2000, 1333);
+
+        // 缩小到一半以下时，单步双线性插值会跳过大部分细线，与原输出的 PSNR 只有 15~17dB
+        for (int width : new int[]{150, 300, 600}) {
+            BufferedImage expected = legacyScaleToWidth(source, width);
+            BufferedImage actual = ImageScaler.scaleToWidth(source, width);
+
+            assertThat(psnr(expected, actual)).as("width %d", width).isGreaterThan(25.0);
+        }
+    }
+
+    @Test
+    void keepsAspectRatioAndOutputsRgb() {
+        BufferedImage source = photographic(1001, 667, BufferedImage.TYPE_INT_ARGB);
+
+        BufferedImage scaled = ImageScaler.scaleToWidth(source, 300);
+
+        assertThat(scaled.getWidth()).isEqualTo(300);
+        assertThat(scaled.getHeight()).isEqualTo(199);
+        assertThat(scaled.getType()).isEqualTo(BufferedImage.TYPE_INT_RGB);
+    }
+
+    // 原先 FileStorageService.createThumbnail 的缩放方式
+    private static BufferedImage legacyScaleToWidth(BufferedImage source, int width) {
+        int height = (int) (source.getHeight() * (width / (double) source.getWidth()));
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = scaled.createGraphics();
+        g.drawImage(source.getScaledInstance(width, height, Image.SCALE_SMOOTH), 0, 0, null);
+        g.dispose();
+        return scaled;
+    }
+
+    private static BufferedImage photographic(int width, int height, int type) {
+        BufferedImage image = new BufferedImage(width, height, type);
+        Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setPaint(new GradientPaint(0, 0, new Color(230, 200, 160), width, height, new Color(60, 80, 120)));
+        g.fillRect(0, 0, width, height);
+        g.setColor(new Color(180, 60, 40));
+        g.fillOval(width / 5, height / 4, width / 3, height / 2);
+        g.setColor(new Color(40, 140, 90, 180));
+        g.fillRoundRect(width / 2, height / 3, width / 3, height / 3, 80, 80);
+        g.dispose();
+        return image;
+    }
+
+    private static BufferedImage fineLines(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, width, height);
+        g.setColor(Color.DARK_GRAY);
+        g.setStroke(new BasicStroke(1));
+        for (int x = 0; x < width; x += 7) {
+            g.drawLine(x, 0, x + height / 3, height);
+        }
+        g.dispose();
+        return image;
+    }
+
+    private static double meanAbsoluteError(BufferedImage a, BufferedImage b) {
+        long total = 0;
+        for (int y = 0; y < a.getHeight(); y++) {
+            for (int x = 0; x < a.getWidth(); x++) {
+                int p = a.getRGB(x, y);
+                int q = b.getRGB(x, y);
+                for (int shift = 0; shift <= 16; shift += 8) {
+                    total += Math.abs(((p >> shift) & 0xff) - ((q >> shift) & 0xff));
+                }
+            }
+        }
+        return total / (3.0 * a.getWidth() * a.getHeight());
+    }
+
+    private static double psnr(BufferedImage a, BufferedImage b) {
+        double squared = 0;
+        for (int y = 0; y < a.getHeight(); y++) {
+            for (int x = 0; x < a.getWidth(); x++) {
+                int p = a.getRGB(x, y);
+                int q = b.getRGB(x, y);
+                for (int shift = 0; shift <= 16; shift += 8) {
+                    int diff = ((p >> shift) & 0xff) - ((q >> shift) & 0xff);
+                    squared += diff * diff;
+                }
+            }
+        }
+        double mse = squared / (3.0 * a.getWidth() * a.getHeight());
+        return mse == 0 ? Double.POSITIVE_INFINITY : 10 * Math.log10(255.0 * 255.0 / mse);
+    }
+}
@@ -0,0 +1,32 @@
+package com.huang.decorationsharingapi.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MaterialExportServiceTests {
+
+    @Test
+    void quotesSeparatorsAndEscapesQuotes() throws IOException {
+        assertThat(csvLine("1", "现代客厅", null, "a,b", "say \"hi\"", "two\nlines"))
+                .isEqualTo("1,现代客厅,,\"a,b\",\"say \"\"hi\"\"\",\"two\nlines\"\r\n");
+    }
+
+    @Test
+    void neutralisesSpreadsheetFormulas() throws IOException {
+        assertThat(csvLine("=HYPERLINK(\"http://x\",\"y\")", "+1", "-2+3", "@SUM(A1)", "\tcmd", "\rcmd"))
+                .isEqualTo("\"'=HYPERLINK(\"\"http://x\"\",\"\"y\"\")\",\"'+1\",\"'-2+3\",\"'@SUM(A1)\","
+                        + "\"'\tcmd\",\"'\rcmd\"\r\n");
+        // 只检查首字符，中间出现的符号保持原样
+        assertThat(csvLine("a=b", "12", "2-3")).isEqualTo("a=b,12,2-3\r\n");
+    }
+
+    private static String csvLine(String... values) throws IOException {
+        StringWriter writer = new StringWriter();
+        MaterialExportService.writeCsvLine(writer, values);
+        return writer.toString();
+    }
+}
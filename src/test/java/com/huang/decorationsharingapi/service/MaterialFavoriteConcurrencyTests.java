@@ -0,0 +1,221 @@
+package com.huang.decorationsharingapi.service;
+
+import com.huang.decorationsharingapi.entity.Category;
+import com.huang.decorationsharingapi.entity.Material;
+import com.huang.decorationsharingapi.entity.User;
+import com.huang.decorationsharingapi.exception.ResourceNotFoundException;
+import com.huang.decorationsharingapi.repository.CategoryRepository;
+import com.huang.decorationsharingapi.repository.MaterialRepository;
+import com.huang.decorationsharingapi.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.doThrow;
+
+@SpringBootTest
+class MaterialFavoriteConcurrencyTests {
+
+    private static final int USERS = 4;
+    private static final int THREADS_PER_USER = 4;
+    private static final int TOGGLES_PER_THREAD = 25;
+
+    @Autowired
+    private MaterialService materialService;
+
+    // 默认调用真实方法，个别用例模拟用户收藏数更新失败
+    @SpyBean
+    private UserRepository userRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private MaterialRepository materialRepository;
+
+    @Autowired
+    private FavoriteCountBuffer favoriteCountBuffer;
+
+    @Autowired
+    private UserCounterRepair counterRepair;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final List<User> users = new ArrayList<>();
+    private Category category;
+    private Material material;
+
+    @BeforeEach
+    void setUp() {
+        String suffix = UUID.randomUUID().toString().substring(0, 8);
+        category = categoryRepository.save(Category.builder().name("fav-" + suffix).build());
+        for (int i = 0; i < USERS; i++) {
+            users.add(userRepository.save(User.builder()
+                    .username("fav" + i + "-" + suffix)
+                    .email("fav" + i + "-" + suffix + "@example.com")
+                    .password("x")
+                    .role(User.Role.USER)
+                    .status(User.Status.ACTIVE)
+                    .build()));
+        }
+        material = materialRepository.save(Material.builder()
+                .title("fav-" + suffix)
+                .imageUrl("/uploads/fav.png")
+                .category(category)
+                .user(users.get(0))
+                .status(Material.Status.APPROVED)
+                .views(0)
+                .favorites(0)
+                .build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (material != null) {
+            jdbcTemplate.update("DELETE FROM favorites WHERE material_id = ?", material.getId());
+            materialRepository.deleteById(material.getId());
+        }
+        users.forEach(user -> userRepository.deleteById(user.getId()));
+        if (category != null) {
+            categoryRepository.deleteById(category.getId());
+        }
+    }
+
+    @Test
+    void concurrentTogglesKeepCounterInSyncWithRows() throws Exception {
+        runConcurrentToggles(false);
+
+        assertCounterMatchesRows();
+    }
+
+    @Test
+    void counterRepairDuringTogglesDoesNotCreateDrift() throws Exception {
+        runConcurrentToggles(true);
+
+        assertCounterMatchesRows();
+    }
+
+    private void runConcurrentToggles(boolean repairConcurrently) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(USERS * THREADS_PER_USER + 1);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean done = new AtomicBoolean();
+        List<Future<?>> futures = new ArrayList<>();
+        Future<?> repairs = null;
+        try {
+            if (repairConcurrently) {
+                repairs = executor.submit(() -> {
+                    start.await();
+                    while (!done.get()) {
+                        counterRepair.repair();
+                    }
+                    return null;
+                });
+            }
+            for (User user : users) {
+                for (int t = 0; t < THREADS_PER_USER; t++) {
+                    futures.add(executor.submit(() -> {
+                        start.await();
+                        for (int i = 0; i < TOGGLES_PER_THREAD; i++) {
+                            materialService.toggleFavorite(material.getId(), user.getUsername());
+                        }
+                        return null;
+                    }));
+                }
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+            done.set(true);
+            if (repairs != null) {
+                repairs.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            done.set(true);
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void addAndRemoveAreIdempotent() {
+        String username = users.get(1).getUsername();
+
+        materialService.addFavorite(material.getId(), username);
+        materialService.addFavorite(material.getId(), username);
+        assertEquals(1, countRows());
+        assertCounterMatchesRows();
+
+        materialService.removeFavorite(material.getId(), username);
+        materialService.removeFavorite(material.getId(), username);
+        assertEquals(0, countRows());
+        assertCounterMatchesRows();
+    }
+
+    @Test
+    void failedCounterUpdateRollsBackFavoriteRow() {
+        User user = users.get(2);
+        materialService.addFavorite(material.getId(), user.getUsername());
+        doThrow(new DataAccessResourceFailureException("收藏数更新失败"))
+                .when(userRepository).addFavoriteCount(user.getId(), -1);
+
+        assertThrows(DataAccessResourceFailureException.class,
+                () -> materialService.removeFavorite(material.getId(), user.getUsername()));
+
+        assertEquals(1, countRows());
+        assertCounterMatchesRows();
+    }
+
+    @Test
+    void favoritingMissingMaterialLeavesCounterUnchanged() {
+        User user = users.get(3);
+
+        assertThrows(ResourceNotFoundException.class,
+                () -> materialService.addFavorite(Long.MAX_VALUE, user.getUsername()));
+
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT favorite_count FROM users WHERE id = ?", Integer.class, user.getId()));
+    }
+
+    // 素材收藏数经写回缓冲异步更新，比较前先写回
+    private void assertCounterMatchesRows() {
+        favoriteCountBuffer.flush();
+        int rows = countRows();
+        Integer counter = jdbcTemplate.queryForObject(
+                "SELECT favorites FROM materials WHERE id = ?", Integer.class, material.getId());
+        assertTrue(rows <= USERS);
+        assertEquals(rows, counter);
+
+        for (User user : users) {
+            Integer userRows = jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM favorites WHERE user_id = ?", Integer.class, user.getId());
+            Integer userCounter = jdbcTemplate.queryForObject(
+                    "SELECT favorite_count FROM users WHERE id = ?", Integer.class, user.getId());
+            assertEquals(userRows, userCounter);
+        }
+    }
+
+    private int countRows() {
+        Integer rows = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM favorites WHERE material_id = ?", Integer.class, material.getId());
+        return rows == null ? 0 : rows;
+    }
+}
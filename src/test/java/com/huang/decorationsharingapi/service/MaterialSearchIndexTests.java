@@ -0,0 +1,89 @@
+package com.huang.decorationsharingapi.service;
+
+import com.huang.decorationsharingapi.entity.Category;
+import com.huang.decorationsharingapi.entity.Material;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MaterialSearchIndexTests {
+
+    private MaterialSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new MaterialSearchIndex(null);
+        index.index(material(1L, "现代客厅装修方案", "简约风格，适合小户型", 1L, "客厅"));
+        index.index(material(2L, "北欧卧室软装", "温馨的卧室布置，搭配客厅灯具", 2L, "卧室"));
+        index.index(material(3L, "Modern Sofa Design", "living room sofa", 1L, "sofa"));
+    }
+
+    @Test
+    void tokenizesCjkIntoBigramsAndLatinIntoWords() {
+        assertThat(SearchTokenizer.tokenizeQuery("客厅装修 Sofa"))
+                .containsExactly("客厅", "厅装", "装修", "sofa");
+        assertThat(SearchTokenizer.tokenize("客厅")).containsExactly("客", "客厅", "厅");
+    }
+
+    @Test
+    void ranksTitleMatchesFirst() {
+        MaterialSearchIndex.SearchResult result = index.search("客厅", null, 0, 10);
+
+        assertThat(result.getTotal()).isEqualTo(2);
+        assertThat(result.getIds()).containsExactly(1L, 2L);
+    }
+
+    @Test
+    void requiresAllQueryTermsAndAppliesCategoryFilter() {
+        assertThat(index.search("客厅装修", null, 0, 10).getIds()).containsExactly(1L);
+        assertThat(index.search("客厅", 2L, 0, 10).getIds()).containsExactly(2L);
+        assertThat(index.search("sofa design", null, 0, 10).getIds()).containsExactly(3L);
+        assertThat(index.search("厨房", null, 0, 10).getTotal()).isZero();
+    }
+
+    @Test
+    void removesMaterialsThatLeaveApprovedState() {
+        Material rejected = material(1L, "现代客厅装修方案", "简约风格，适合小户型", 1L, "客厅");
+        rejected.setStatus(Material.Status.REJECTED);
+        index.index(rejected);
+
+        assertThat(index.search("客厅", null, 0, 10).getIds()).containsExactly(2L);
+    }
+
+    @Test
+    void pagesThroughRankedResults() {
+        assertThat(index.search("客厅", null, 1, 10).getIds()).containsExactly(2L);
+        assertThat(index.search("客厅", null, 0, 1).getIds()).containsExactly(1L);
+    }
+
+    @Test
+    void rejectsPagesBeyondResultWindow() {
+        int window = MaterialSearchIndex.MAX_RESULT_WINDOW;
+        assertThat(index.search("客厅", null, window - 10, 10).getIds()).isEmpty();
+
+        assertThatThrownBy(() -> index.search("客厅", null, window - 9, 10))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> index.search("客厅", null, 20000000L * 100, 100))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> MaterialCursor.decodeOffset(MaterialCursor.encodeOffset(Integer.MAX_VALUE)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private Material material(Long id, String title, String description, Long categoryId, String tag) {
+        return Material.builder()
+                .id(id)
+                .title(title)
+                .description(description)
+                .category(Category.builder().id(categoryId).build())
+                .tags(tag == null ? Collections.emptyList() : Arrays.asList(tag))
+                .status(Material.Status.APPROVED)
+                .createdAt(LocalDateTime.now())
+                .build();
+    }
+}